@@ -29,7 +29,7 @@ class AsyncPoster implements Runnable, Poster {
 
     AsyncPoster(EventBus eventBus) {
         this.eventBus = eventBus;
-        queue = new PendingPostQueue();
+        queue = new PendingPostQueue(eventBus.isCollectingMetrics());
     }
 
     public void enqueue(Subscription subscription, Object event) {
@@ -47,4 +47,9 @@ class AsyncPoster implements Runnable, Poster {
         eventBus.invokeSubscriber(pendingPost);
     }
 
+    @Override
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
 }
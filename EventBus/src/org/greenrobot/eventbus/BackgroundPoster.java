@@ -32,7 +32,7 @@ final class BackgroundPoster implements Runnable, Poster {
 
     BackgroundPoster(EventBus eventBus) {
         this.eventBus = eventBus;
-        queue = new PendingPostQueue();
+        queue = new PendingPostQueue(eventBus.isCollectingMetrics());
     }
 
     public void enqueue(Subscription subscription, Object event) {
@@ -77,4 +77,9 @@ final class BackgroundPoster implements Runnable, Poster {
         }
     }
 
+    @Override
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lock-free cache of values computed per Class. If available, {@link ClassValue} is used to attach the values to the
+ * classes themselves: unlike a static map, this does not prevent classes (and their class loaders) from being garbage
+ * collected, e.g. when a plugin host redeploys plugins. Android does not provide ClassValue (before API 34), so a
+ * concurrent map is used there instead; classes are not unloaded on Android anyway.
+ */
+abstract class ClassCache<V> {
+
+    static <V> ClassCache<V> create() {
+        try {
+            Class.forName("java.lang.ClassValue");
+        } catch (ClassNotFoundException e) {
+            return new MapClassCache<>();
+        }
+        // Separate class, so ClassValue is only loaded if it's available
+        return new ClassValueCache<>();
+    }
+
+    /** @return the value cached for the given class or null */
+    abstract V get(Class<?> clazz);
+
+    abstract void put(Class<?> clazz, V value);
+
+    abstract void clear();
+
+    static final class ClassValueCache<V> extends ClassCache<V> {
+        private volatile ClassValue<Holder<V>> classValue = newClassValue();
+
+        private static <V> ClassValue<Holder<V>> newClassValue() {
+            return new ClassValue<Holder<V>>() {
+                @Override
+                protected Holder<V> computeValue(Class<?> type) {
+                    return new Holder<>();
+                }
+            };
+        }
+
+        @Override
+        V get(Class<?> clazz) {
+            return classValue.get(clazz).value;
+        }
+
+        @Override
+        void put(Class<?> clazz, V value) {
+            classValue.get(clazz).value = value;
+        }
+
+        @Override
+        void clear() {
+            // ClassValue cannot be cleared for all classes; values attached to the old instance become unreachable
+            classValue = newClassValue();
+        }
+    }
+
+    static final class Holder<V> {
+        volatile V value;
+    }
+
+    static final class MapClassCache<V> extends ClassCache<V> {
+        private final Map<Class<?>, V> map = new ConcurrentHashMap<>();
+
+        @Override
+        V get(Class<?> clazz) {
+            return map.get(clazz);
+        }
+
+        @Override
+        void put(Class<?> clazz, V value) {
+            map.put(clazz, value);
+        }
+
+        @Override
+        void clear() {
+            map.clear();
+        }
+    }
+
+}
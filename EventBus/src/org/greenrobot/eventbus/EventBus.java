@@ -15,15 +15,31 @@
  */
 package org.greenrobot.eventbus;
 
+import org.greenrobot.eventbus.meta.EventTypeIndex;
+import org.greenrobot.eventbus.meta.SubscriberInfoIndex;
+import org.greenrobot.eventbus.meta.SubscriberMethodInvoker;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 /**
@@ -48,16 +64,50 @@ public class EventBus {
     private static final EventBusBuilder DEFAULT_BUILDER = new EventBusBuilder();
 
 //    查找 eventClass 的所有父类和接口，包括他自己,当发送一个event的时候，检查是否有注册他的父类，接口相关的类
-    private static final Map<Class<?>, List<Class<?>>> eventTypesCache = new HashMap<>();
+    private static final ClassCache<Class<?>[]> eventTypesCache = ClassCache.create();
+
+    //event 和 Subscription 的map，post时不加锁读取；SubscriptionList只增不删
+    private final Map<Class<?>, SubscriptionList> subscriptionsByEventType;
+    /** Incremented whenever an event type gets its first subscriber, which invalidates all {@link DispatchPlan}s. */
+    private volatile int subscribedTypesEpoch;
+    //post时每个event类要发送的类型，只包含有SubscriptionList的类型；没有父类订阅者时只有它自己（直接发送）
+    //ClassCache不会让event类（和它的ClassLoader）无法回收；DispatchPlan只存Class，不能引用到EventBus或订阅者，
+    //否则String.class等共享类上的ClassValue值会让EventBus和所有订阅者都无法回收
+    private final ClassCache<DispatchPlan> dispatchPlans = ClassCache.create();
+    //builder里单独配置的event类型是否发送给父类订阅者
+    // @Nullable
+    private final Map<Class<?>, Boolean> configuredEventInheritance;
 
-    //event 和 Subscription 的map
-    private final Map<Class<?>, CopyOnWriteArrayList<Subscription>> subscriptionsByEventType;
+    //一个Subscriber实例的Registration，持有它所有的Subscription，主要用在unregister的时候，把subscriptionsByEventType里相关的Subscription清除
+    private final Map<Object, Registration> registrationsBySubscriber;
+
+    /** Calls {@link EventConsumer}s, which are the "subscribers" of their subscriptions. */
+    private static final SubscriberMethodInvoker EVENT_CONSUMER_INVOKER = new SubscriberMethodInvoker() {
+        @SuppressWarnings("unchecked")
+        @Override
+        public void invoke(Object subscriber, Object event) throws InvocationTargetException {
+            try {
+                ((EventConsumer<Object>) subscriber).onEvent(event);
+            } catch (RuntimeException | Error e) {
+                throw new InvocationTargetException(e);
+            }
+        }
+    };
 
-    //一个Subscriber实例有多个event,主要用在unregister的时候，把subscriptionsByEventType里相关的Subscription清除
-    private final Map<Object, List<Class<?>>> typesBySubscriber;
+    //弱引用注册的Subscriber，被回收后其WeakSubscriber进入collectedSubscribers，在register/post时顺便清除
+    private final Map<Object, Registration> weakRegistrationsBySubscriber;
+    private final ReferenceQueue<Object> collectedSubscribers = new ReferenceQueue<>();
+    /** Avoids polling the reference queue when posting unless weak registrations were ever used. */
+    private volatile boolean hasWeakRegistrations;
 
-    //stick event的class 和 stickevent实例，只保存最新的实例
-    private final Map<Class<?>, Object> stickyEvents;
+    //stick event的class 和 stickevent实例，只保存最新的实例；读不加锁，每个类型带版本号
+    private final StickyEventStore stickyEvents;
+    //每个类型最近N个事件，sticky订阅者register时按顺序重放；没有配置时为null
+    private final ReplayBuffers replayBuffers;
+    //post次数、订阅方法耗时等指标；没有开启时为null
+    private final EventBusMetrics metrics;
+    //订阅方法执行太慢时回调；没有开启时为null
+    private final SlowSubscriberWatchdog slowSubscriberWatchdog;
 
     private final ThreadLocal<PostingThreadState> currentPostingThreadState = new ThreadLocal<PostingThreadState>() {
         @Override
@@ -73,6 +123,8 @@ public class EventBus {
     private final BackgroundPoster backgroundPoster;
     private final AsyncPoster asyncPoster;
     private final SubscriberMethodFinder subscriberMethodFinder;
+    //注解处理器生成的event类型层级，不用反射查找父类和接口
+    private final List<EventTypeIndex> eventTypeIndexes;
     private final ExecutorService executorService;
 
     private final boolean throwSubscriberException;
@@ -123,17 +175,27 @@ public class EventBus {
     EventBus(EventBusBuilder builder) {
         logger = builder.getLogger();
 
-        subscriptionsByEventType = new HashMap<>();
+        subscriptionsByEventType = new ConcurrentHashMap<>();
 
-        typesBySubscriber = new HashMap<>();
+        registrationsBySubscriber = new HashMap<>();
+        weakRegistrationsBySubscriber = new WeakHashMap<>();
 
-        stickyEvents = new ConcurrentHashMap<>();
 
+        // 需在创建poster之前，poster据此决定是否记录入队时间
+        metrics = builder.collectMetrics ? new EventBusMetrics() : null;
         mainThreadSupport = builder.getMainThreadSupport();
         mainThreadPoster = mainThreadSupport != null ? mainThreadSupport.createPoster(this) : null;
         backgroundPoster = new BackgroundPoster(this);
         asyncPoster = new AsyncPoster(this);
         indexCount = builder.subscriberInfoIndexes != null ? builder.subscriberInfoIndexes.size() : 0;
+        eventTypeIndexes = new ArrayList<>();
+        if (builder.subscriberInfoIndexes != null && !builder.ignoreGeneratedIndex) {
+            for (SubscriberInfoIndex index : builder.subscriberInfoIndexes) {
+                if (index instanceof EventTypeIndex) {
+                    eventTypeIndexes.add((EventTypeIndex) index);
+                }
+            }
+        }
         //false false
         subscriberMethodFinder = new SubscriberMethodFinder(builder.subscriberInfoIndexes,
                 builder.strictMethodVerification, builder.ignoreGeneratedIndex);
@@ -144,20 +206,54 @@ public class EventBus {
         sendNoSubscriberEvent = builder.sendNoSubscriberEvent;
         throwSubscriberException = builder.throwSubscriberException;
         eventInheritance = builder.eventInheritance;
+        configuredEventInheritance = builder.eventInheritanceByType != null ?
+                new HashMap<>(builder.eventInheritanceByType) : null;
+        Map<Class<?>, KeyedStickyEvents.Limits> keyedStickyLimits = builder.keyedStickyLimits != null ?
+                new HashMap<>(builder.keyedStickyLimits) : null;
+        StickyEventPersistence stickyPersistence = null;
+        if (builder.stickyPersistenceFile != null) {
+            try {
+                stickyPersistence = new StickyEventPersistence(builder.stickyPersistenceFile,
+                        builder.stickyEventCodec, logger);
+            } catch (IOException e) {
+                throw new EventBusException("Could not open sticky event file " + builder.stickyPersistenceFile, e);
+            }
+        }
+        stickyEvents = new StickyEventStore(this, keyedStickyLimits, stickyPersistence);
+        replayBuffers = builder.replayConfigs != null ? new ReplayBuffers(builder.replayConfigs) : null;
+        slowSubscriberWatchdog = builder.slowSubscriberListener != null ? new SlowSubscriberWatchdog(
+                builder.slowSubscriberThresholdNanos, builder.slowSubscriberStackTraces,
+                builder.slowSubscriberListener, logger) : null;
         executorService = builder.executorService;
     }
     //endregion
 
     //region 1.register
     /**
-     * Registers the given subscriber to receive events. Subscribers must call {@link #unregister(Object)} once they
-     * are no longer interested in receiving events.
+     * Registers the given subscriber to receive events. Subscribers must call {@link #unregister(Object)} (or
+     * {@link Registration#unregister()} on the returned handle) once they are no longer interested in receiving events.
      * <p/>
      * Subscribers have event handling methods that must be annotated by {@link Subscribe}.
      * The {@link Subscribe} annotation also allows configuration like {@link
      * ThreadMode} and priority.
      */
-    public void register(Object subscriber) {
+    public Registration register(Object subscriber) {
+        return register(subscriber, false);
+    }
+
+    /**
+     * Like {@link #register(Object)}, but the bus only keeps a weak reference to the subscriber. If the subscriber is
+     * garbage collected without unregistering, it stops receiving events and is purged from the bus eventually (while
+     * registering or posting).
+     * <p/>
+     * Note: the subscriber must be referenced elsewhere as long as it should receive events.
+     */
+    public Registration registerWeakly(Object subscriber) {
+        hasWeakRegistrations = true;
+        return register(subscriber, true);
+    }
+
+    private Registration register(Object subscriber, boolean weak) {
         // 首先获得class对象
         Class<?> subscriberClass = subscriber.getClass();
         // 通过 subscriberMethodFinder 来找到订阅者订阅了哪些事件.返回一个 SubscriberMethod 对象的 List, SubscriberMethod
@@ -165,67 +261,133 @@ public class EventBus {
         // 先级 priority ,以及是否接收粘性 sticky 事件的 boolean 值，其实就是解析这个类上的所有 Subscriber 注解方法属性。
         List<SubscriberMethod> subscriberMethods = subscriberMethodFinder.findSubscriberMethods(subscriberClass);
         synchronized (this) {
+            purgeCollectedSubscribers();
+            // 如果已经注册过，再次注册抛异常
+            if (isRegistered(subscriber)) {
+                throw new EventBusException("Subscriber " + subscriberClass + " already registered");
+            }
+            List<Subscription> subscriptions = new ArrayList<>(subscriberMethods.size());
+            Registration registration;
+            if (weak) {
+                registration = new Registration(this, subscriber, collectedSubscribers, subscriptions);
+                weakRegistrationsBySubscriber.put(subscriber, registration);
+            } else {
+                registration = new Registration(this, subscriber, subscriptions);
+                registrationsBySubscriber.put(subscriber, registration);
+            }
             for (SubscriberMethod subscriberMethod : subscriberMethods) {
                 // 订阅
-                subscribe(subscriber, subscriberMethod);
+                subscribe(registration, subscriberMethod);
             }
+            return registration;
         }
     }
 
     // Must be called in synchronized block
-    private void subscribe(Object subscriber, SubscriberMethod subscriberMethod) {
+    private void subscribe(Registration registration, SubscriberMethod subscriberMethod) {
+        if (subscriberMethod.sticky && replayBuffers != null) {
+            // Adding the subscription and replaying must not interleave with recording events, see ReplayBuffers
+            synchronized (replayBuffers) {
+                addSubscription(registration, subscriberMethod);
+            }
+        } else {
+            addSubscription(registration, subscriberMethod);
+        }
+    }
+
+    // Must be called in synchronized block
+    private void addSubscription(Registration registration, SubscriberMethod subscriberMethod) {
         // 获取方法参数的 class
         Class<?> eventType = subscriberMethod.eventType;
         // 创建一个 Subscription
-        Subscription newSubscription = new Subscription(subscriber, subscriberMethod);
-        // 获取订阅了此事件类的所有订阅者信息列表
-        CopyOnWriteArrayList<Subscription> subscriptions = subscriptionsByEventType.get(eventType);
+        Subscription newSubscription = registration.weakSubscriber != null ?
+                new Subscription(registration.weakSubscriber, subscriberMethod) :
+                new Subscription(registration.getSubscriber(), subscriberMethod);
+        if (metrics != null) {
+            newSubscription.metrics = metrics.getSubscriberMethodCounters(subscriberMethod,
+                    registration.getSubscriber());
+        }
+        // 获取订阅了此事件类的所有订阅者信息列表，按优先级插入
+        getOrCreateSubscriptionList(eventType).add(newSubscription);
+        // 将此订阅加入 Registration 中
+        registration.subscriptions.add(newSubscription);
+        // 处理粘性事件，如果粘性事件，将最近的粘性事件实例，发送给方法，触发方法
+        if (subscriberMethod.sticky) {
+            postStickyEvents(newSubscription);
+        }
+    }
+
+    // Must be called in synchronized block
+    private SubscriptionList getOrCreateSubscriptionList(Class<?> eventType) {
+        SubscriptionList subscriptions = subscriptionsByEventType.get(eventType);
         if (subscriptions == null) {
-            // 线程安全的 ArrayList
-            subscriptions = new CopyOnWriteArrayList<>();
-            // 添加
+            subscriptions = new SubscriptionList();
             subscriptionsByEventType.put(eventType, subscriptions);
-        } else {
-            // 是否包含，如果包含再次添加抛异常
-            if (subscriptions.contains(newSubscription)) {
-                throw new EventBusException("Subscriber " + subscriber.getClass() + " already registered to event "
-                        + eventType);
-            }
+            // After the put, so posting threads seeing the new epoch also see the new list
+            subscribedTypesEpoch++;
         }
-        // 处理优先级
-        int size = subscriptions.size();
-        for (int i = 0; i <= size; i++) {
-            if (i == size || subscriberMethod.priority > subscriptions.get(i).subscriberMethod.priority) {
-                subscriptions.add(i, newSubscription);
-                break;
+        return subscriptions;
+    }
+
+    // Must be called in synchronized block
+    private void postStickyEvents(Subscription newSubscription) {
+        Class<?> eventType = newSubscription.subscriberMethod.eventType;
+        stickyEvents.loadPersistedAssignableTo(eventType);
+        // Existing sticky events of eventType and of subclasses with event inheritance have to be considered.
+        // The index only holds types assignable to eventType, so this costs the number of matches.
+        Set<Class<?>> stickyTypes = stickyEvents.getStickyTypesAssignableTo(eventType);
+        if (stickyTypes != null) {
+            for (Class<?> stickyType : stickyTypes) {
+                if (isStickyDeliverable(stickyType, eventType)) {
+                    // Null if removed concurrently
+                    Object stickyEvent = stickyEvents.get(stickyType);
+                    checkPostStickyEventToSubscription(newSubscription, stickyEvent);
+                }
             }
         }
-        // 通过 subscriber 获取  List<Class<?>>
-        List<Class<?>> subscribedEvents = typesBySubscriber.get(subscriber);
-        if (subscribedEvents == null) {
-            subscribedEvents = new ArrayList<>();
-            typesBySubscriber.put(subscriber, subscribedEvents);
+        Set<Class<?>> keyedTypes = stickyEvents.getKeyedTypesAssignableTo(eventType);
+        if (keyedTypes != null) {
+            for (Class<?> keyedType : keyedTypes) {
+                if (isStickyDeliverable(keyedType, eventType)) {
+                    postKeyedStickyEvents(newSubscription, stickyEvents.getKeyed(keyedType));
+                }
+            }
         }
-        // 将此事件类加入 订阅者事件类列表中
-        subscribedEvents.add(eventType);
-        // 处理粘性事件，如果粘性事件，将最近的粘性事件实例，发送给方法，触发方法
-        if (subscriberMethod.sticky) {
-            if (eventInheritance) {
-                // Existing sticky events of all subclasses of eventType have to be considered.
-                // Note: Iterating over all events may be inefficient with lots of sticky events,
-                // thus data structure should be changed to allow a more efficient lookup
-                // (e.g. an additional map storing sub classes of super classes: Class -> List<Class>).
-                Set<Map.Entry<Class<?>, Object>> entries = stickyEvents.entrySet();
-                for (Map.Entry<Class<?>, Object> entry : entries) {
-                    Class<?> candidateEventType = entry.getKey();
-//                    isAssignableFrom()方法是判断是否为某个类的父类，instanceof关键字是判断是否某个类的子类。
-                    if (eventType.isAssignableFrom(candidateEventType)) {
-                        Object stickyEvent = entry.getValue();
-                        checkPostStickyEventToSubscription(newSubscription, stickyEvent);
+        if (replayBuffers != null) {
+            // Called synchronized on replayBuffers
+            List<ReplayBuffers.ReplayBuffer> selectedBuffers = null;
+            for (ReplayBuffers.ReplayBuffer replayBuffer : replayBuffers.getBuffers()) {
+                Class<?> replayedType = replayBuffer.eventType;
+                if (replayedType == eventType ||
+                        (eventType.isAssignableFrom(replayedType) && isEventInheritance(replayedType))) {
+                    if (selectedBuffers == null) {
+                        selectedBuffers = new ArrayList<>();
                     }
+                    selectedBuffers.add(replayBuffer);
                 }
-            } else {
-                Object stickyEvent = stickyEvents.get(eventType);
+            }
+            if (selectedBuffers != null) {
+                for (Object replayEvent : replayBuffers.getEvents(selectedBuffers)) {
+                    postToSubscription(newSubscription, replayEvent, isMainThread());
+                }
+            }
+        }
+    }
+
+    /** True if sticky events of the given type go to a subscriber of the given (super) type. */
+    private boolean isStickyDeliverable(Class<?> stickyType, Class<?> subscribedType) {
+        return (stickyType == subscribedType || isEventInheritance(stickyType)) && !isReplayed(stickyType);
+    }
+
+    /** Sticky events of replayed types are also in their replay buffer, so they are only delivered from there. */
+    private boolean isReplayed(Class<?> eventType) {
+        return replayBuffers != null && replayBuffers.get(eventType) != null;
+    }
+
+    private void postKeyedStickyEvents(Subscription newSubscription, KeyedStickyEvents keyedEvents) {
+        if (keyedEvents != null) {
+            // Copied, so subscribers may post or remove keyed sticky events while they get them
+            for (Object stickyEvent : keyedEvents.copyEvents()) {
                 checkPostStickyEventToSubscription(newSubscription, stickyEvent);
             }
         }
@@ -238,6 +400,169 @@ public class EventBus {
             postToSubscription(newSubscription, stickyEvent, isMainThread());
         }
     }
+
+    /**
+     * Registers all given subscribers like {@link #register(Object)}, but much faster for many subscribers: instead of
+     * copying the subscription list of an event type for each new subscription, new subscriptions are merged in
+     * priority order and each affected list is published once. Either all or none of the subscribers are
+     * registered.
+     */
+    public void registerAll(Collection<?> subscribers) {
+        // Like register(), resolve subscriber methods before taking the lock
+        List<List<SubscriberMethod>> subscriberMethodsList = new ArrayList<>(subscribers.size());
+        for (Object subscriber : subscribers) {
+            subscriberMethodsList.add(subscriberMethodFinder.findSubscriberMethods(subscriber.getClass()));
+        }
+        synchronized (this) {
+            Set<Object> newSubscribers = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+            purgeCollectedSubscribers();
+            for (Object subscriber : subscribers) {
+                if (isRegistered(subscriber) || !newSubscribers.add(subscriber)) {
+                    throw new EventBusException("Subscriber " + subscriber.getClass() + " already registered");
+                }
+            }
+
+            // Group new subscriptions by event type, keeping registration order
+            Map<Class<?>, List<Subscription>> newSubscriptionsByEventType = new LinkedHashMap<>();
+            List<Subscription> stickySubscriptions = new ArrayList<>();
+            int i = 0;
+            for (Object subscriber : subscribers) {
+                List<SubscriberMethod> subscriberMethods = subscriberMethodsList.get(i++);
+                List<Subscription> subscriptions = new ArrayList<>(subscriberMethods.size());
+                for (SubscriberMethod subscriberMethod : subscriberMethods) {
+                    Subscription newSubscription = new Subscription(subscriber, subscriberMethod);
+                    if (metrics != null) {
+                        newSubscription.metrics = metrics.getSubscriberMethodCounters(subscriberMethod, subscriber);
+                    }
+                    List<Subscription> newSubscriptions = newSubscriptionsByEventType.get(subscriberMethod.eventType);
+                    if (newSubscriptions == null) {
+                        newSubscriptions = new ArrayList<>();
+                        newSubscriptionsByEventType.put(subscriberMethod.eventType, newSubscriptions);
+                    }
+                    newSubscriptions.add(newSubscription);
+                    subscriptions.add(newSubscription);
+                    if (subscriberMethod.sticky) {
+                        stickySubscriptions.add(newSubscription);
+                    }
+                }
+                registrationsBySubscriber.put(subscriber, new Registration(this, subscriber, subscriptions));
+            }
+
+            if (replayBuffers != null) {
+                // Adding the subscriptions and replaying must not interleave with recording events, see ReplayBuffers
+                synchronized (replayBuffers) {
+                    addSubscriptions(newSubscriptionsByEventType, stickySubscriptions);
+                }
+            } else {
+                addSubscriptions(newSubscriptionsByEventType, stickySubscriptions);
+            }
+        }
+    }
+
+    // Must be called in synchronized block
+    private void addSubscriptions(Map<Class<?>, List<Subscription>> newSubscriptionsByEventType,
+                                  List<Subscription> stickySubscriptions) {
+        for (Map.Entry<Class<?>, List<Subscription>> entry : newSubscriptionsByEventType.entrySet()) {
+            List<Subscription> newSubscriptions = entry.getValue();
+            // Stable sort keeps registration order within the same priority
+            Collections.sort(newSubscriptions, new Comparator<Subscription>() {
+                @Override
+                public int compare(Subscription lhs, Subscription rhs) {
+                    int lhsPriority = lhs.subscriberMethod.priority;
+                    int rhsPriority = rhs.subscriberMethod.priority;
+                    return lhsPriority > rhsPriority ? -1 : (lhsPriority == rhsPriority ? 0 : 1);
+                }
+            });
+            getOrCreateSubscriptionList(entry.getKey()).addAll(newSubscriptions);
+        }
+
+        for (Subscription stickySubscription : stickySubscriptions) {
+            postStickyEvents(stickySubscription);
+        }
+    }
+    //endregion
+
+    //region subscribe EventConsumer
+    /** Like {@link #subscribe(Class, EventConsumer, ThreadMode, int, boolean)} using {@link ThreadMode#POSTING}. */
+    public <T> Registration subscribe(Class<T> eventType, EventConsumer<? super T> consumer) {
+        return subscribe(eventType, consumer, ThreadMode.POSTING, 0, false);
+    }
+
+    /** Like {@link #subscribe(Class, EventConsumer, ThreadMode, int, boolean)} with default priority, not sticky. */
+    public <T> Registration subscribe(Class<T> eventType, EventConsumer<? super T> consumer, ThreadMode threadMode) {
+        return subscribe(eventType, consumer, threadMode, 0, false);
+    }
+
+    /**
+     * Subscribes the consumer to events of the given type, with the same semantics as a {@link Subscribe} annotated
+     * method using the given thread mode, priority and sticky flag. Unlike {@link #register(Object)}, this involves no
+     * reflection and events are delivered by directly calling the consumer.
+     * <p/>
+     * The consumer is not registered as a subscriber object (e.g. for {@link #unregister(Object)}); use the returned
+     * handle to unsubscribe. The same consumer may be subscribed multiple times.
+     */
+    public <T> Registration subscribe(Class<T> eventType, EventConsumer<? super T> consumer, ThreadMode threadMode,
+                                      int priority, boolean sticky) {
+        if (eventType == null || consumer == null || threadMode == null) {
+            throw new NullPointerException("Event type, consumer and thread mode must not be null");
+        }
+        SubscriberMethod subscriberMethod = new SubscriberMethod(EVENT_CONSUMER_INVOKER, eventType, threadMode,
+                priority, sticky);
+        synchronized (this) {
+            purgeCollectedSubscribers();
+            Registration registration = new Registration(this, consumer, new ArrayList<Subscription>(1));
+            subscribe(registration, subscriberMethod);
+            return registration;
+        }
+    }
+    //endregion
+
+    //region preload
+    /**
+     * Looks up the subscriber methods of the given classes in background threads (using the executor service) and
+     * caches them. A later {@link #register(Object)} of such a subscriber will hit the cache instead of paying for
+     * reflection or index resolution on the registering thread, which is often startup critical.
+     * <p/>
+     * Classes which cannot be registered (e.g. because they have no @Subscribe methods) are logged and skipped.
+     */
+    public void preload(Class<?>... subscriberClasses) {
+        submitPreload(Arrays.asList(subscriberClasses));
+    }
+
+    /**
+     * Like {@link #preload(Class[])} for all subscriber classes of the added indexes. Only generated indexes (see
+     * {@link org.greenrobot.eventbus.meta.EnumerableSubscriberInfoIndex}) can list their classes.
+     */
+    public void preloadIndexedSubscribers() {
+        submitPreload(subscriberMethodFinder.getIndexedSubscriberClasses());
+    }
+
+    private void submitPreload(final List<Class<?>> subscriberClasses) {
+        final int count = subscriberClasses.size();
+        if (count == 0) {
+            return;
+        }
+        // Workers pull the next class until all are done, so a slow class does not hold back a whole batch
+        final AtomicInteger nextIndex = new AtomicInteger();
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int index;
+                while ((index = nextIndex.getAndIncrement()) < count) {
+                    Class<?> subscriberClass = subscriberClasses.get(index);
+                    try {
+                        subscriberMethodFinder.findSubscriberMethods(subscriberClass);
+                    } catch (RuntimeException e) {
+                        logger.log(Level.WARNING, "Could not preload subscriber " + subscriberClass, e);
+                    }
+                }
+            }
+        };
+        int workerCount = Math.min(count, Runtime.getRuntime().availableProcessors());
+        for (int i = 0; i < workerCount; i++) {
+            executorService.execute(worker);
+        }
+    }
     //endregion
 
     //region isMainThread isRegistered
@@ -252,46 +577,66 @@ public class EventBus {
     }
 
     public synchronized boolean isRegistered(Object subscriber) {
-        return typesBySubscriber.containsKey(subscriber);
+        return registrationsBySubscriber.containsKey(subscriber) || weakRegistrationsBySubscriber.containsKey(subscriber);
     }
-    //endregion
 
-    //region 3.unregister unsubscribeByEventType
-    /** Only updates subscriptionsByEventType, not typesBySubscriber! Caller must update typesBySubscriber. */
-    private void unsubscribeByEventType(Object subscriber, Class<?> eventType) {
-        // 获取事件类的所有订阅信息列表，将订阅信息从订阅信息集合中移除，同时将订阅信息中的active属性置为FALSE
-        List<Subscription> subscriptions = subscriptionsByEventType.get(eventType);
-        if (subscriptions != null) {
-            int size = subscriptions.size();
-            for (int i = 0; i < size; i++) {
-                Subscription subscription = subscriptions.get(i);
-                if (subscription.subscriber == subscriber) {
-                    // 将订阅信息激活状态置为FALSE
-                    subscription.active = false;
-                    // 将订阅信息从集合中移除
-                    subscriptions.remove(i);
-                    i--;
-                    size--;
-                }
-            }
-        }
+    synchronized boolean isRegistered(Registration registration) {
+        return registration.registered && registration.getSubscriber() != null;
     }
+    //endregion
 
+    //region 3.unregister
     /** Unregisters the given subscriber from all event classes. */
     public synchronized void unregister(Object subscriber) {
-        // 获取订阅对象的所有订阅事件类列表
-        List<Class<?>> subscribedTypes = typesBySubscriber.get(subscriber);
-        if (subscribedTypes != null) {
-            for (Class<?> eventType : subscribedTypes) {
-                // 将订阅者的订阅信息移除
-                unsubscribeByEventType(subscriber, eventType);
-            }
-            // 将订阅者从列表中移除
-            typesBySubscriber.remove(subscriber);
+        // 获取订阅对象的 Registration
+        Registration registration = registrationsBySubscriber.get(subscriber);
+        if (registration == null) {
+            registration = weakRegistrationsBySubscriber.get(subscriber);
+        }
+        if (registration != null) {
+            unregister(registration);
         } else {
             logger.log(Level.WARNING, "Subscriber to unregister was not registered before: " + subscriber.getClass());
         }
     }
+
+    /** Does nothing if the registration is not current, e.g. because it was already unregistered. */
+    synchronized void unregister(Registration registration) {
+        if (!registration.registered) {
+            return;
+        }
+        registration.registered = false;
+        // 将订阅者从列表中移除；已经被回收的弱引用订阅者，WeakHashMap会自己清除
+        // EventConsumer的Registration不在列表中，所以要先检查
+        Object subscriber = registration.getSubscriber();
+        Map<Object, Registration> registrations = registration.weakSubscriber == null ?
+                registrationsBySubscriber : weakRegistrationsBySubscriber;
+        if (subscriber != null && registrations.get(subscriber) == registration) {
+            registrations.remove(subscriber);
+        }
+        for (Subscription subscription : registration.subscriptions) {
+            // 将订阅信息激活状态置为FALSE，不需要遍历事件类的订阅信息列表
+            subscriptionsByEventType.get(subscription.subscriberMethod.eventType).remove(subscription);
+        }
+    }
+
+    /**
+     * Unregisters all given subscribers like {@link #unregister(Object)}. Subscription lists are compacted lazily, so
+     * each list is rebuilt only a few times even when most of its subscribers are removed.
+     */
+    public synchronized void unregisterAll(Collection<?> subscribers) {
+        for (Object subscriber : subscribers) {
+            unregister(subscriber);
+        }
+    }
+
+    /** Unregisters weakly registered subscribers which have been garbage collected. Cheap if there are none. */
+    private void purgeCollectedSubscribers() {
+        Reference<?> reference;
+        while ((reference = collectedSubscribers.poll()) != null) {
+            unregister(((Registration.WeakSubscriber) reference).registration);
+        }
+    }
     //endregion
 
     /**
@@ -323,21 +668,70 @@ public class EventBus {
      * event of an event's type is kept in memory for future access by subscribers using {@link Subscribe#sticky()}.
      */
     public void postSticky(Object event) {
-        synchronized (stickyEvents) {
-            stickyEvents.put(event.getClass(), event);
-        }
+        stickyEvents.put(event, 0);
         // Should be posted after it is putted, in case the subscriber wants to remove immediately
         post(event);
     }
 
     /**
-     * Gets the most recent sticky event for the given type.
+     * Like {@link #postSticky(Object)}, but the sticky event expires after the given time: it is not returned by
+     * {@link #getStickyEvent(Class)} anymore and not delivered to subscribers registered after that. Expired events are
+     * removed when read or swept out a few at a time while the bus is in use; there is no timer thread.
+     */
+    public void postSticky(Object event, long timeToLive, TimeUnit unit) {
+        if (timeToLive <= 0) {
+            throw new EventBusException("Time to live must be positive: " + timeToLive);
+        }
+        stickyEvents.put(event, unit.toNanos(timeToLive));
+        post(event);
+    }
+
+    /**
+     * Gets the most recent sticky event for the given type. Does not lock, so it is cheap to poll from many threads.
      *
      * @see #postSticky(Object)
      */
     public <T> T getStickyEvent(Class<T> eventType) {
-        synchronized (stickyEvents) {
-            return eventType.cast(stickyEvents.get(eventType));
+        return eventType.cast(stickyEvents.get(eventType));
+    }
+
+    /**
+     * Gets the version of the sticky event for the given type, which changes (increases) each time a sticky event of
+     * this type is posted, replaced, removed or expires. Allows checking whether the sticky event changed since a
+     * previous call without fetching it. While there is no sticky event of the type, the version may also increase
+     * because of sticky events of other types.
+     *
+     * @return 0 if there never was a sticky event of any type.
+     */
+    public long getStickyEventVersion(Class<?> eventType) {
+        return stickyEvents.getVersion(eventType);
+    }
+
+    /**
+     * Gets the sticky events of the given types as they all were at one point in time, even if they are posted or
+     * removed concurrently. Types without sticky event are not contained in the returned (unmodifiable) map.
+     */
+    public Map<Class<?>, Object> getStickyEvents(Class<?>... eventTypes) {
+        return stickyEvents.snapshot(eventTypes);
+    }
+
+    /**
+     * Atomically replaces the sticky event of the new event's type if it equals expectedEvent, and then posts the new
+     * event like {@link #postSticky(Object)}. If the replaced event expires (see
+     * {@link #postSticky(Object, long, TimeUnit)}), the new event expires at the same time.
+     *
+     * @return true if the events matched and the sticky event was replaced.
+     */
+    public boolean replaceStickyEvent(Object expectedEvent, Object newEvent) {
+        if (expectedEvent.getClass() != newEvent.getClass()) {
+            throw new EventBusException("Events must be of the same type: " + expectedEvent.getClass()
+                    + " vs. " + newEvent.getClass());
+        }
+        if (stickyEvents.replace(expectedEvent, newEvent)) {
+            post(newEvent);
+            return true;
+        } else {
+            return false;
         }
     }
 
@@ -347,65 +741,144 @@ public class EventBus {
      * @see #postSticky(Object)
      */
     public <T> T removeStickyEvent(Class<T> eventType) {
-        synchronized (stickyEvents) {
-            return eventType.cast(stickyEvents.remove(eventType));
-        }
+        return eventType.cast(stickyEvents.remove(eventType));
     }
 
     /**
-     * Removes the sticky event if it equals to the given event.
+     * Removes the sticky event if it equals to the given event (atomically).
      *
      * @return true if the events matched and the sticky event was removed.
      */
     public boolean removeStickyEvent(Object event) {
-        synchronized (stickyEvents) {
-            Class<?> eventType = event.getClass();
-            Object existingEvent = stickyEvents.get(eventType);
-            if (event.equals(existingEvent)) {
-                stickyEvents.remove(eventType);
-                return true;
-            } else {
-                return false;
-            }
+        return stickyEvents.remove(event);
+    }
+
+    /**
+     * Posts the given event and keeps it as the sticky event of its type for the given key, so there is a sticky event
+     * per key (e.g. the latest quote per symbol). Subscribers using {@link Subscribe#sticky()} get the events of all
+     * retained keys on registration. How many keys are retained can be limited per event type using
+     * {@link EventBusBuilder#maxStickyKeys(Class, int)} and {@link EventBusBuilder#maxStickyWeight(Class, long,
+     * StickyEventWeigher)}.
+     * <p/>
+     * Keyed sticky events are independent of the sticky event posted by {@link #postSticky(Object)}.
+     */
+    public void postKeyedSticky(Object key, Object event) {
+        if (key == null) {
+            throw new EventBusException("Key may not be null");
         }
+        stickyEvents.getOrCreateKeyed(event.getClass()).put(key, event);
+        post(event);
+    }
+
+    /** Gets the most recent keyed sticky event for the given type and key. */
+    public <T> T getKeyedStickyEvent(Class<T> eventType, Object key) {
+        KeyedStickyEvents keyedEvents = stickyEvents.getKeyed(eventType);
+        return keyedEvents != null ? eventType.cast(keyedEvents.get(key)) : null;
+    }
+
+    /** Gets a copy of the keyed sticky events for the given type by key, least recently used first. */
+    public <T> Map<Object, T> getKeyedStickyEvents(Class<T> eventType) {
+        KeyedStickyEvents keyedEvents = stickyEvents.getKeyed(eventType);
+        return keyedEvents != null ? keyedEvents.copyEvents(eventType) : Collections.<Object, T>emptyMap();
+    }
+
+    /** Removes and gets the keyed sticky event for the given type and key. */
+    public <T> T removeKeyedStickyEvent(Class<T> eventType, Object key) {
+        KeyedStickyEvents keyedEvents = stickyEvents.getKeyed(eventType);
+        return keyedEvents != null ? eventType.cast(keyedEvents.remove(key)) : null;
     }
 
     /**
-     * Removes all sticky events.
+     * The total weight of the retained keyed sticky events of the given type, as calculated by the weigher given to
+     * {@link EventBusBuilder#maxStickyWeight(Class, long, StickyEventWeigher)}; 0 for types without weigher.
      */
-    public void removeAllStickyEvents() {
-        synchronized (stickyEvents) {
-            stickyEvents.clear();
+    public long getKeyedStickyWeight(Class<?> eventType) {
+        KeyedStickyEvents keyedEvents = stickyEvents.getKeyed(eventType);
+        return keyedEvents != null ? keyedEvents.getWeight() : 0;
+    }
+
+    /** The total weight of all retained keyed sticky events, see {@link #getKeyedStickyWeight(Class)}. */
+    public long getKeyedStickyWeight() {
+        return stickyEvents.getKeyedWeight();
+    }
+
+    /**
+     * Gets the events retained for replay of exactly the given type in posting order, see
+     * {@link EventBusBuilder#replay(Class, int)}. Empty if the type is not replayed.
+     */
+    public <T> List<T> getReplayEvents(Class<T> eventType) {
+        if (replayBuffers == null) {
+            return Collections.emptyList();
+        }
+        List<Object> events;
+        synchronized (replayBuffers) {
+            events = replayBuffers.getEvents(eventType);
         }
+        List<T> typedEvents = new ArrayList<>(events.size());
+        for (Object event : events) {
+            typedEvents.add(eventType.cast(event));
+        }
+        return typedEvents;
+    }
+
+    /**
+     * Removes all sticky events, including keyed ones.
+     */
+    public void removeAllStickyEvents() {
+        stickyEvents.clear();
+    }
+
+    /**
+     * Closes the file given to {@link EventBusBuilder#stickyPersistence(java.io.File, StickyEventCodec)}, e.g. before
+     * another EventBus uses it. Sticky events stay available in memory, but later changes are no longer persisted and
+     * events not loaded yet are not loaded anymore. Does nothing without persistence or if already closed.
+     */
+    public void closeStickyPersistence() {
+        stickyEvents.closePersistence();
     }
     //endregion
 
-    //region hasSubscriberForEvent
+    //region hasSubscriberForEvent getMetrics
     public boolean hasSubscriberForEvent(Class<?> eventClass) {
-        List<Class<?>> eventTypes = lookupAllEventTypes(eventClass);
-        if (eventTypes != null) {
-            int countTypes = eventTypes.size();
-            for (int h = 0; h < countTypes; h++) {
-                Class<?> clazz = eventTypes.get(h);
-                CopyOnWriteArrayList<Subscription> subscriptions;
-                synchronized (this) {
-                    subscriptions = subscriptionsByEventType.get(clazz);
-                }
-                if (subscriptions != null && !subscriptions.isEmpty()) {
-                    return true;
-                }
+        for (Class<?> eventType : getDispatchPlan(eventClass).subscribedTypes) {
+            if (!subscriptionsByEventType.get(eventType).isEmpty()) {
+                return true;
             }
         }
         return false;
     }
+
+    /**
+     * Takes a snapshot of the metrics collected so far, see {@link EventBusBuilder#collectMetrics(boolean)}.
+     *
+     * @return the snapshot or null if metrics are not collected
+     */
+    public MetricsSnapshot getMetrics() {
+        if (metrics == null) {
+            return null;
+        }
+        int mainQueueDepth = mainThreadPoster != null ? mainThreadPoster.getQueueDepth() : -1;
+        return metrics.snapshot(mainQueueDepth, backgroundPoster.getQueueDepth(), asyncPoster.getQueueDepth());
+    }
+
+    /** True if metrics are collected; posters then record when events are queued. */
+    boolean isCollectingMetrics() {
+        return metrics != null;
+    }
     //endregion
 
-    //region 2.post postSingleEvent postSingleEventForEventType postToSubscription
+    //region 2.post postSingleEvent postToSubscriptions postToSubscription
     /** Posts the given event to the event bus. */
     public void post(Object event) {
         // currentPostingThreadState 是一个 ThreadLocal，
         // 他的特点是获取当前线程一份独有的变量数据，不受其他线程影响。
         // 这个在 Handler 里面有过源码分析
+        if (hasWeakRegistrations) {
+            purgeCollectedSubscribers();
+        }
+        if (stickyEvents.hasExpiringEvents()) {
+            stickyEvents.sweepExpired();
+        }
         PostingThreadState postingState = currentPostingThreadState.get();
         // postingState 就是获取到的线程独有的变量数据
         List<Object> eventQueue = postingState.eventQueue;
@@ -435,23 +908,32 @@ public class EventBus {
         Class<?> eventClass = event.getClass();
         // 是否找到订阅者
         boolean subscriptionFound = false;
-        // 如果支持事件继承，默认为支持
-        if (eventInheritance) {
-            // 查找 eventClass 的所有父类和接口，包括他自己
-            List<Class<?>> eventTypes = lookupAllEventTypes(eventClass);
-            int countTypes = eventTypes.size();
-            for (int h = 0; h < countTypes; h++) {
-                Class<?> clazz = eventTypes.get(h);
-                // 依次向 eventClass 的父类或接口的订阅方法发送事件
-                // 只要有一个事件发送成功，返回 true ，那么 subscriptionFound 就为 true
-                subscriptionFound |= postSingleEventForEventType(event, postingState, clazz);
-            }
+        EventBusMetrics.EventTypeCounters eventTypeCounters = null;
+        if (metrics != null) {
+            eventTypeCounters = metrics.getEventTypeCounters(eventClass);
+            eventTypeCounters.posts.incrementAndGet();
+        }
+        ReplayBuffers.ReplayBuffer replayBuffer = replayBuffers != null ? replayBuffers.get(eventClass) : null;
+        if (replayBuffer != null) {
+            subscriptionFound = postReplayedEvent(event, postingState, replayBuffer);
         } else {
-            // 发送事件
-            subscriptionFound = postSingleEventForEventType(event, postingState, eventClass);
+            // 得到要发送的Subscription 列表，不需要加锁
+            // 支持事件继承时包括 eventClass 有订阅者的父类和接口；没有父类订阅者时只有它自己
+            for (Class<?> eventType : getDispatchPlan(eventClass).subscribedTypes) {
+                // SubscriptionList只增不删，plan里的类型一定有
+                SubscriptionList subscriptions = subscriptionsByEventType.get(eventType);
+                // 只要有一个列表有订阅者，那么 subscriptionFound 就为 true
+                if (!subscriptions.isEmpty()) {
+                    subscriptionFound = true;
+                    postToSubscriptions(event, postingState, subscriptions.getSnapshot());
+                }
+            }
         }
         // 如果没有订阅者
         if (!subscriptionFound) {
+            if (eventTypeCounters != null) {
+                eventTypeCounters.noSubscriberPosts.incrementAndGet();
+            }
             if (logNoSubscriberMessages) {
                 logger.log(Level.FINE, "No subscribers registered for event " + eventClass);
             }
@@ -462,36 +944,108 @@ public class EventBus {
         }
     }
 
-    private boolean postSingleEventForEventType(Object event, PostingThreadState postingState, Class<?> eventClass) {
-        CopyOnWriteArrayList<Subscription> subscriptions;
-        synchronized (this) {
-            // 得到Subscription 列表
-            subscriptions = subscriptionsByEventType.get(eventClass);
-        }
-        if (subscriptions != null && !subscriptions.isEmpty()) {
-            // 遍历 subscriptions
-            for (Subscription subscription : subscriptions) {
-                postingState.event = event;
-                postingState.subscription = subscription;
-                boolean aborted;
-                try {
-                    // 发送事件
-                    postToSubscription(subscription, event, postingState.isMainThread);
-                    // 是否被取消了
-                    aborted = postingState.canceled;
-                } finally {
-                    postingState.event = null;
-                    postingState.subscription = null;
-                    postingState.canceled = false;
+    /**
+     * Records the event in its replay buffer and takes the subscription snapshots to post to at once, so a concurrently
+     * registering sticky subscriber gets the event either replayed or live, see {@link ReplayBuffers}.
+     */
+    private boolean postReplayedEvent(Object event, PostingThreadState postingState,
+                                      ReplayBuffers.ReplayBuffer replayBuffer) {
+        Subscription[][] snapshots;
+        synchronized (replayBuffers) {
+            replayBuffers.record(replayBuffer, event);
+            // Within the lock, so a list created by a concurrent sticky registration is included
+            Class<?>[] subscribedTypes = getDispatchPlan(event.getClass()).subscribedTypes;
+            snapshots = new Subscription[subscribedTypes.length][];
+            for (int h = 0; h < subscribedTypes.length; h++) {
+                SubscriptionList subscriptions = subscriptionsByEventType.get(subscribedTypes[h]);
+                if (!subscriptions.isEmpty()) {
+                    snapshots[h] = subscriptions.getSnapshot();
                 }
-                // 如果被取消，则跳出循环
-                if (aborted) {
-                    break;
+            }
+        }
+        boolean subscriptionFound = false;
+        for (Subscription[] snapshot : snapshots) {
+            if (snapshot != null) {
+                subscriptionFound = true;
+                postToSubscriptions(event, postingState, snapshot);
+            }
+        }
+        return subscriptionFound;
+    }
+
+    /**
+     * Gets the event types with subscription lists an event of the given class is posted to. The plan is cached until
+     * an event type gets its first subscriber; there are no locks involved unless the plan has to be computed.
+     */
+    private DispatchPlan getDispatchPlan(Class<?> eventClass) {
+        // Read before looking up the lists, so lists created meanwhile invalidate the computed plan
+        int epoch = subscribedTypesEpoch;
+        DispatchPlan plan = dispatchPlans.get(eventClass);
+        if (plan == null || plan.epoch != epoch) {
+            // The resolved inheritance does not change, only the subscribed types
+            boolean inheritance = plan != null ? plan.eventInheritance : isEventInheritance(eventClass);
+            // 只保留有SubscriptionList的类型
+            Class<?>[] eventTypes = inheritance ? lookupAllEventTypes(eventClass) : new Class<?>[]{eventClass};
+            List<Class<?>> subscribedTypes = new ArrayList<>(eventTypes.length);
+            for (Class<?> eventType : eventTypes) {
+                if (subscriptionsByEventType.containsKey(eventType)) {
+                    subscribedTypes.add(eventType);
                 }
             }
-            return true;
+            plan = new DispatchPlan(epoch, inheritance, subscribedTypes.toArray(new Class<?>[subscribedTypes.size()]));
+            // Racing threads may compute the same plan; a stale epoch is recomputed by the next post
+            dispatchPlans.put(eventClass, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * True if events of the given class are also posted to subscribers of its supertypes. Resolved from the class
+     * up through its superclasses: configuration from {@link EventBusBuilder#eventInheritance(Class, boolean)} first,
+     * then the {@link EventInheritance} annotation; falls back to {@link EventBusBuilder#eventInheritance(boolean)}.
+     * Not cached: posting uses the result stored in the {@link DispatchPlan}.
+     */
+    boolean isEventInheritance(Class<?> eventClass) {
+        for (Class<?> clazz = eventClass; clazz != null; clazz = clazz.getSuperclass()) {
+            Boolean configured = configuredEventInheritance != null ? configuredEventInheritance.get(clazz) : null;
+            if (configured != null) {
+                return configured;
+            }
+            EventInheritance annotation = clazz.getAnnotation(EventInheritance.class);
+            if (annotation != null) {
+                return annotation.value();
+            }
+        }
+        return eventInheritance;
+    }
+
+    private void postToSubscriptions(Object event, PostingThreadState postingState, Subscription[] snapshot) {
+        // 遍历 subscriptions 的快照，跳过已经 unregister 的
+        for (Subscription subscription : snapshot) {
+            if (!subscription.active) {
+                continue;
+            }
+            postingState.event = event;
+            postingState.subscription = subscription;
+            boolean aborted;
+            try {
+                // 发送事件
+                postToSubscription(subscription, event, postingState.isMainThread);
+                // 是否被取消了
+                aborted = postingState.canceled;
+            } finally {
+                postingState.event = null;
+                postingState.subscription = null;
+                postingState.canceled = false;
+            }
+            // 如果被取消，则跳出循环
+            if (aborted) {
+                if (metrics != null) {
+                    metrics.getEventTypeCounters(event.getClass()).cancellations.incrementAndGet();
+                }
+                break;
+            }
         }
-        return false;
     }
 
     private void postToSubscription(Subscription subscription, Object event, boolean isMainThread) {
@@ -537,37 +1091,49 @@ public class EventBus {
     //endregion
 
     //region 查找event的父类及父接口，存放到eventTypesCache包括他自己
-    /** Looks up all Class objects including super classes and interfaces. Should also work for interfaces. */
+    /**
+     * Looks up all Class objects including super classes and interfaces. Should also work for interfaces. The returned
+     * array is shared by all EventBus instances and must not be modified.
+     */
     //查找父类和接口
-    private static List<Class<?>> lookupAllEventTypes(Class<?> eventClass) {
-        synchronized (eventTypesCache) {
-            //找到缓存里是否有
-            List<Class<?>> eventTypes = eventTypesCache.get(eventClass);
-            if (eventTypes == null) {
-                //如果就没有，就新建一个
-                eventTypes = new ArrayList<>();
-                //从他自己开始，往上层一个一个加
-                Class<?> clazz = eventClass;
-                while (clazz != null) {
-                    //添加类
-                    eventTypes.add(clazz);
-                    //添加接口
-                    addInterfaces(eventTypes, clazz.getInterfaces());
-                    //查找父类
-                    clazz = clazz.getSuperclass();
+    Class<?>[] lookupAllEventTypes(Class<?> eventClass) {
+        //找到缓存里是否有，不加锁
+        Class<?>[] eventTypes = eventTypesCache.get(eventClass);
+        if (eventTypes == null) {
+            //先查生成的index，都是一样的结果，所以可以放到共享的缓存里
+            for (EventTypeIndex eventTypeIndex : eventTypeIndexes) {
+                Class<?>[] indexedEventTypes = eventTypeIndex.getEventTypes(eventClass);
+                if (indexedEventTypes != null) {
+                    // Copied, so the cache does not depend on the index not modifying it
+                    eventTypes = indexedEventTypes.clone();
+                    eventTypesCache.put(eventClass, eventTypes);
+                    return eventTypes;
                 }
-                eventTypesCache.put(eventClass, eventTypes);
             }
-            return eventTypes;
+            //如果就没有，就新建一个；Set去重，不用每次遍历List
+            Set<Class<?>> eventTypeSet = new LinkedHashSet<>();
+            //从他自己开始，往上层一个一个加
+            Class<?> clazz = eventClass;
+            while (clazz != null) {
+                //添加类
+                eventTypeSet.add(clazz);
+                //添加接口
+                addInterfaces(eventTypeSet, clazz.getInterfaces());
+                //查找父类
+                clazz = clazz.getSuperclass();
+            }
+            eventTypes = eventTypeSet.toArray(new Class<?>[eventTypeSet.size()]);
+            // Racing threads may compute the same array; that's cheaper than locking every lookup
+            eventTypesCache.put(eventClass, eventTypes);
         }
+        return eventTypes;
     }
 
     /** Recurses through super interfaces. */
     //递归调用
-    static void addInterfaces(List<Class<?>> eventTypes, Class<?>[] interfaces) {
+    static void addInterfaces(Set<Class<?>> eventTypes, Class<?>[] interfaces) {
         for (Class<?> interfaceClass : interfaces) {
-            if (!eventTypes.contains(interfaceClass)) {
-                eventTypes.add(interfaceClass);
+            if (eventTypes.add(interfaceClass)) {
                 //递归调用
                 addInterfaces(eventTypes, interfaceClass.getInterfaces());
             }
@@ -585,27 +1151,62 @@ public class EventBus {
     void invokeSubscriber(PendingPost pendingPost) {
         Object event = pendingPost.event;
         Subscription subscription = pendingPost.subscription;
+        long enqueuedNanos = pendingPost.enqueuedNanos;
         PendingPost.releasePendingPost(pendingPost);
         if (subscription.active) {
+            if (metrics != null) {
+                metrics.recordQueueWait(subscription.subscriberMethod.threadMode, event.getClass(),
+                        System.nanoTime() - enqueuedNanos);
+            }
             invokeSubscriber(subscription, event);
         }
     }
 
     void invokeSubscriber(Subscription subscription, Object event) {
+        Object subscriber = subscription.getSubscriber();
+        if (subscriber == null) {
+            // Weakly registered subscriber was garbage collected, it will be purged soon
+            return;
+        }
+        EventBusMetrics.SubscriberMethodCounters counters = subscription.metrics;
+        long startNanos = counters != null ? System.nanoTime() : 0;
+        SlowSubscriberWatchdog.Slot watchdogSlot = slowSubscriberWatchdog != null ?
+                slowSubscriberWatchdog.enter(subscription, event) : null;
         try {
-            subscription.subscriberMethod.method.invoke(subscription.subscriber, event);
+            SubscriberMethod subscriberMethod = subscription.subscriberMethod;
+            if (subscriberMethod.invoker != null) {
+                subscriberMethod.invoker.invoke(subscriber, event);
+            } else {
+                subscriberMethod.method.invoke(subscriber, event);
+            }
         } catch (InvocationTargetException e) {
-            handleSubscriberException(subscription, event, e.getCause());
+            if (watchdogSlot != null) {
+                slowSubscriberWatchdog.exit(watchdogSlot);
+                watchdogSlot = null;
+            }
+            if (counters != null) {
+                // Recorded before handling, which may post a SubscriberExceptionEvent or throw
+                counters.recordDelivery(System.nanoTime() - startNanos, true);
+                counters = null;
+            }
+            handleSubscriberException(subscriber, event, e.getCause());
         } catch (IllegalAccessException e) {
             throw new IllegalStateException("Unexpected exception", e);
+        } finally {
+            if (watchdogSlot != null) {
+                slowSubscriberWatchdog.exit(watchdogSlot);
+            }
+        }
+        if (counters != null) {
+            counters.recordDelivery(System.nanoTime() - startNanos, false);
         }
     }
 
-    private void handleSubscriberException(Subscription subscription, Object event, Throwable cause) {
+    private void handleSubscriberException(Object subscriber, Object event, Throwable cause) {
         if (event instanceof SubscriberExceptionEvent) {
             if (logSubscriberExceptions) {
                 // Don't send another SubscriberExceptionEvent to avoid infinite event recursion, just log
-                logger.log(Level.SEVERE, "SubscriberExceptionEvent subscriber " + subscription.subscriber.getClass()
+                logger.log(Level.SEVERE, "SubscriberExceptionEvent subscriber " + subscriber.getClass()
                         + " threw an exception", cause);
                 SubscriberExceptionEvent exEvent = (SubscriberExceptionEvent) event;
                 logger.log(Level.SEVERE, "Initial event " + exEvent.causingEvent + " caused exception in "
@@ -617,11 +1218,10 @@ public class EventBus {
             }
             if (logSubscriberExceptions) {
                 logger.log(Level.SEVERE, "Could not dispatch event: " + event.getClass() + " to subscribing class "
-                        + subscription.subscriber.getClass(), cause);
+                        + subscriber.getClass(), cause);
             }
             if (sendSubscriberExceptionEvent) {
-                SubscriberExceptionEvent exEvent = new SubscriberExceptionEvent(this, cause, event,
-                        subscription.subscriber);
+                SubscriberExceptionEvent exEvent = new SubscriberExceptionEvent(this, cause, event, subscriber);
                 post(exEvent);
             }
         }
@@ -636,6 +1236,24 @@ public class EventBus {
         Object event;
         boolean canceled;
     }
+
+    /**
+     * The event types to post an event class to, valid while {@link #subscribedTypesEpoch} is unchanged. Holds no
+     * subscription lists: it is stored in a ClassValue, from where it must not reach the EventBus or its subscribers.
+     */
+    static final class DispatchPlan {
+        final int epoch;
+        /** See {@link #isEventInheritance(Class)}. */
+        final boolean eventInheritance;
+        /** Only types with a subscription list, which may be empty; a single type if no supertype has one. */
+        final Class<?>[] subscribedTypes;
+
+        DispatchPlan(int epoch, boolean eventInheritance, Class<?>[] subscribedTypes) {
+            this.epoch = epoch;
+            this.eventInheritance = eventInheritance;
+            this.subscribedTypes = subscribedTypes;
+        }
+    }
     //endregion
 
     //region ok
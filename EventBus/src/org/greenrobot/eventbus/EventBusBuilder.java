@@ -20,10 +20,14 @@ import android.os.Looper;
 import org.greenrobot.eventbus.android.AndroidLogger;
 import org.greenrobot.eventbus.meta.SubscriberInfoIndex;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Creates EventBus instances with custom parameters and also allows to install a custom default EventBus instance.
@@ -62,6 +66,21 @@ public class EventBusBuilder {
     List<SubscriberInfoIndex> subscriberInfoIndexes;//注解生成的索引,在编译器生成,需要通过android-apt三方插件或annotationProcessor生成
     Logger logger;
     MainThreadSupport mainThreadSupport;
+    //带key的sticky event每个类型的上限，没有配置的类型不限制
+    Map<Class<?>, KeyedStickyEvents.Limits> keyedStickyLimits;
+    //sticky event持久化到文件，重启后还在
+    File stickyPersistenceFile;
+    StickyEventCodec stickyEventCodec;
+    //需要重放最近N个事件的类型
+    Map<Class<?>, ReplayBuffers.Config> replayConfigs;
+    //统计post次数、订阅方法耗时等，默认关闭
+    boolean collectMetrics;
+    //订阅方法执行超过阈值时回调，没有设置listener时关闭
+    long slowSubscriberThresholdNanos;
+    boolean slowSubscriberStackTraces;
+    SlowSubscriberListener slowSubscriberListener;
+    //单独设置某个event类型（及其子类）是否发送给父类订阅者，优先于@EventInheritance和全局eventInheritance
+    Map<Class<?>, Boolean> eventInheritanceByType;
     //endregion
 
     EventBusBuilder() {
@@ -120,6 +139,57 @@ public class EventBusBuilder {
         return this;
     }
 
+    /**
+     * Overrides {@link #eventInheritance(boolean)} for the given event type and its subclasses (unless they are
+     * configured themselves). Takes precedence over an {@link EventInheritance} annotation on the event class.
+     * <p/>
+     * Independent of this setting, events of a type without subscribers for any of its supertypes are dispatched on
+     * the direct path, like with event inheritance switched off.
+     */
+    public EventBusBuilder eventInheritance(Class<?> eventType, boolean eventInheritance) {
+        checkEventType(eventType);
+        if (eventInheritanceByType == null) {
+            eventInheritanceByType = new HashMap<>();
+        }
+        eventInheritanceByType.put(eventType, eventInheritance);
+        return this;
+    }
+
+    /**
+     * Collects metrics (default: false): posts, events without subscribers and cancellations per event class, and
+     * deliveries, exceptions and an execution time histogram per subscriber method. Get them with
+     * {@link EventBus#getMetrics()}. Without metrics, this costs a null check per post and delivery.
+     *
+     * 统计事件和订阅方法的指标，默认关闭
+     */
+    public EventBusBuilder collectMetrics(boolean collectMetrics) {
+        this.collectMetrics = collectMetrics;
+        return this;
+    }
+
+    /**
+     * Reports subscribers running longer than the given threshold to the given listener, e.g. subscribers blocking
+     * the main thread or the posting thread. A daemon thread watches running deliveries, so stuck subscribers are
+     * reported while they are still running; optionally with a sample of their stack trace, which is more expensive
+     * but only taken for slow subscribers. {@link ThreadMode#ASYNC} subscribers are not watched.
+     * <p/>
+     * The overhead per delivery is a few volatile writes to a thread local, so it can be left on in production.
+     *
+     * 订阅方法执行时间超过阈值时回调listener，可选带上卡住时的调用栈
+     */
+    public EventBusBuilder slowSubscriberWatchdog(long threshold, TimeUnit unit, boolean captureStackTraces,
+                                                  SlowSubscriberListener listener) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        this.slowSubscriberThresholdNanos = unit.toNanos(threshold);
+        this.slowSubscriberStackTraces = captureStackTraces;
+        this.slowSubscriberListener = listener;
+        return this;
+    }
 
     /**
      * Provide a custom thread pool to EventBus used for async and background event delivery. This is an advanced
@@ -165,6 +235,101 @@ public class EventBusBuilder {
         return this;
     }
 
+    /**
+     * Limits the number of keyed sticky events retained for the given event type (see
+     * {@link EventBus#postKeyedSticky(Object, Object)}); once exceeded, the least recently used keys are evicted.
+     * Default: no limit.
+     */
+    public EventBusBuilder maxStickyKeys(Class<?> eventType, int maxKeys) {
+        checkEventType(eventType);
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("Max keys must be positive: " + maxKeys);
+        }
+        KeyedStickyEvents.Limits limits = getKeyedStickyLimits(eventType);
+        setKeyedStickyLimits(eventType, new KeyedStickyEvents.Limits(maxKeys, limits.maxWeight, limits.weigher));
+        return this;
+    }
+
+    /**
+     * Limits the total weight of the keyed sticky events retained for the given event type, e.g. to an approximate
+     * memory size if the weigher returns bytes. Once exceeded, the least recently used keys are evicted.
+     * Default: no limit.
+     *
+     * @see EventBus#getKeyedStickyWeight(Class)
+     */
+    public EventBusBuilder maxStickyWeight(Class<?> eventType, long maxWeight, StickyEventWeigher weigher) {
+        checkEventType(eventType);
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("Max weight must be positive: " + maxWeight);
+        }
+        if (weigher == null) {
+            throw new IllegalArgumentException("Weigher must not be null");
+        }
+        KeyedStickyEvents.Limits limits = getKeyedStickyLimits(eventType);
+        setKeyedStickyLimits(eventType, new KeyedStickyEvents.Limits(limits.maxKeys, maxWeight, weigher));
+        return this;
+    }
+
+    private static void checkEventType(Class<?> eventType) {
+        if (eventType == null) {
+            throw new IllegalArgumentException("Event type must not be null");
+        }
+    }
+
+    private KeyedStickyEvents.Limits getKeyedStickyLimits(Class<?> eventType) {
+        KeyedStickyEvents.Limits limits = keyedStickyLimits != null ? keyedStickyLimits.get(eventType) : null;
+        return limits != null ? limits : new KeyedStickyEvents.Limits(0, 0, null);
+    }
+
+    private void setKeyedStickyLimits(Class<?> eventType, KeyedStickyEvents.Limits limits) {
+        if (keyedStickyLimits == null) {
+            keyedStickyLimits = new HashMap<>();
+        }
+        keyedStickyLimits.put(eventType, limits);
+    }
+
+    /**
+     * Persists sticky events posted with {@link EventBus#postSticky(Object)} (not keyed ones) to the given local file,
+     * so a new EventBus built with the same file gets them back, e.g. after a restart. The file is a memory-mapped,
+     * append-only log that is compacted from time to time. Events are written through the given codec when they are
+     * posted or removed, and decoded only when their type is first requested.
+     * <p/>
+     * The file must not be used by more than one EventBus at a time; see {@link EventBus#closeStickyPersistence()}.
+     */
+    public EventBusBuilder stickyPersistence(File file, StickyEventCodec codec) {
+        if (file == null || codec == null) {
+            throw new IllegalArgumentException("File and codec must not be null");
+        }
+        this.stickyPersistenceFile = file;
+        this.stickyEventCodec = codec;
+        return this;
+    }
+
+    /**
+     * Retains the last maxEvents posted events of exactly the given type in a ring buffer. Sticky subscribers (see
+     * {@link Subscribe#sticky()}) get the retained events in posting order when they register, instead of only the
+     * latest sticky event, and then live events without gaps or duplicates. Events of the type do not have to be
+     * posted as sticky.
+     */
+    public EventBusBuilder replay(Class<?> eventType, int maxEvents) {
+        return replay(eventType, maxEvents, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Like {@link #replay(Class, int)}, but only events posted within the given max age are replayed (0 for any age).
+     */
+    public EventBusBuilder replay(Class<?> eventType, int maxEvents, long maxAge, TimeUnit unit) {
+        checkEventType(eventType);
+        if (maxEvents <= 0 || maxAge < 0) {
+            throw new IllegalArgumentException("Invalid replay limits: " + maxEvents + " events, max age " + maxAge);
+        }
+        if (replayConfigs == null) {
+            replayConfigs = new HashMap<>();
+        }
+        replayConfigs.put(eventType, new ReplayBuffers.Config(maxEvents, unit.toNanos(maxAge)));
+        return this;
+    }
+
     /**
      * Set a specific log handler for all EventBus logging.
      * <p/>
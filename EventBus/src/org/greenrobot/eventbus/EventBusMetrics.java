@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the metrics of an EventBus built with {@link EventBusBuilder#collectMetrics(boolean)}. Recording does not
+ * allocate or lock once an event type or subscriber method was seen; the counters of a subscriber method are attached
+ * to its subscriptions, so deliveries don't even need a lookup.
+ */
+final class EventBusMetrics {
+    static final String MAIN_QUEUE = "main";
+    static final String BACKGROUND_QUEUE = "background";
+    static final String ASYNC_QUEUE = "async";
+
+    private final ConcurrentMap<Class<?>, EventTypeCounters> eventTypeCounters = new ConcurrentHashMap<>();
+    /** Keyed by {@link SubscriberMethod}, or by {@link ConsumerKey} for {@link EventConsumer}s. */
+    private final ConcurrentMap<Object, SubscriberMethodCounters> subscriberMethodCounters =
+            new ConcurrentHashMap<>();
+    /** Time from enqueuing a {@link PendingPost} to invoking its subscriber, per poster. */
+    private final HistogramRecorder mainQueueWaits = new HistogramRecorder();
+    private final HistogramRecorder backgroundQueueWaits = new HistogramRecorder();
+    private final HistogramRecorder asyncQueueWaits = new HistogramRecorder();
+
+    EventTypeCounters getEventTypeCounters(Class<?> eventType) {
+        EventTypeCounters counters = eventTypeCounters.get(eventType);
+        if (counters == null) {
+            counters = new EventTypeCounters();
+            EventTypeCounters existing = eventTypeCounters.putIfAbsent(eventType, counters);
+            if (existing != null) {
+                counters = existing;
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Equal subscriber methods of different subscriber instances share their counters. All {@link EventConsumer}s
+     * share the same SubscriberMethod per event type, so their counters are per consumer class, event type and
+     * thread mode instead.
+     */
+    SubscriberMethodCounters getSubscriberMethodCounters(SubscriberMethod subscriberMethod, Object subscriber) {
+        Object key;
+        Class<?> subscriberClass;
+        if (subscriberMethod.declaringClass != null) {
+            key = subscriberMethod;
+            subscriberClass = subscriberMethod.declaringClass;
+        } else {
+            subscriberClass = subscriber.getClass();
+            key = new ConsumerKey(subscriberClass, subscriberMethod.eventType, subscriberMethod.threadMode);
+        }
+        SubscriberMethodCounters counters = subscriberMethodCounters.get(key);
+        if (counters == null) {
+            counters = new SubscriberMethodCounters(subscriberClass, subscriberMethod);
+            SubscriberMethodCounters existing = subscriberMethodCounters.putIfAbsent(key, counters);
+            if (existing != null) {
+                counters = existing;
+            }
+        }
+        return counters;
+    }
+
+    /** Records how long a queued event waited for its subscriber to be invoked by the poster of the thread mode. */
+    void recordQueueWait(ThreadMode threadMode, Class<?> eventType, long nanos) {
+        HistogramRecorder queueWaits;
+        switch (threadMode) {
+            case MAIN:
+            case MAIN_ORDERED:
+                queueWaits = mainQueueWaits;
+                break;
+            case BACKGROUND:
+                queueWaits = backgroundQueueWaits;
+                break;
+            case ASYNC:
+                queueWaits = asyncQueueWaits;
+                break;
+            default:
+                // POSTING is never queued
+                return;
+        }
+        queueWaits.record(nanos);
+        getEventTypeCounters(eventType).queueWaits.record(nanos);
+    }
+
+    /**
+     * The counters are read one by one, so a snapshot taken while posting may be slightly inconsistent.
+     *
+     * @param mainQueueDepth the depth of the main thread queue or -1 if there is no main thread support
+     */
+    MetricsSnapshot snapshot(int mainQueueDepth, int backgroundQueueDepth, int asyncQueueDepth) {
+        Map<Class<?>, MetricsSnapshot.EventTypeMetrics> eventTypes = new HashMap<>();
+        for (Map.Entry<Class<?>, EventTypeCounters> entry : eventTypeCounters.entrySet()) {
+            EventTypeCounters counters = entry.getValue();
+            eventTypes.put(entry.getKey(), new MetricsSnapshot.EventTypeMetrics(entry.getKey(), counters.posts.get(),
+                    counters.noSubscriberPosts.get(), counters.cancellations.get(), counters.queueWaits.snapshot()));
+        }
+        List<MetricsSnapshot.SubscriberMetrics> subscribers = new ArrayList<>(subscriberMethodCounters.size());
+        for (SubscriberMethodCounters counters : subscriberMethodCounters.values()) {
+            subscribers.add(counters.snapshot());
+        }
+        Map<String, MetricsSnapshot.QueueMetrics> queues = new LinkedHashMap<>();
+        if (mainQueueDepth >= 0) {
+            queues.put(MAIN_QUEUE, new MetricsSnapshot.QueueMetrics(MAIN_QUEUE, mainQueueDepth,
+                    mainQueueWaits.snapshot()));
+        }
+        queues.put(BACKGROUND_QUEUE, new MetricsSnapshot.QueueMetrics(BACKGROUND_QUEUE, backgroundQueueDepth,
+                backgroundQueueWaits.snapshot()));
+        queues.put(ASYNC_QUEUE, new MetricsSnapshot.QueueMetrics(ASYNC_QUEUE, asyncQueueDepth,
+                asyncQueueWaits.snapshot()));
+        return new MetricsSnapshot(Collections.unmodifiableMap(eventTypes),
+                Collections.unmodifiableList(subscribers), Collections.unmodifiableMap(queues));
+    }
+
+    static final class EventTypeCounters {
+        final AtomicLong posts = new AtomicLong();
+        final AtomicLong noSubscriberPosts = new AtomicLong();
+        final AtomicLong cancellations = new AtomicLong();
+        final HistogramRecorder queueWaits = new HistogramRecorder();
+    }
+
+    /** Lock-free histogram with power of two buckets, see {@link MetricsSnapshot.Histogram}. */
+    static final class HistogramRecorder {
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        /** Bucket i counts values below 2^i ns (and at least 2^(i-1) ns), see {@link #bucketIndex(long)}. */
+        private final AtomicLongArray buckets = new AtomicLongArray(MetricsSnapshot.Histogram.BUCKET_COUNT);
+
+        void record(long nanos) {
+            if (nanos < 0) {
+                // nanoTime is not guaranteed to be monotonic on all platforms
+                nanos = 0;
+            }
+            totalNanos.addAndGet(nanos);
+            buckets.incrementAndGet(bucketIndex(nanos));
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        static int bucketIndex(long nanos) {
+            return 64 - Long.numberOfLeadingZeros(nanos);
+        }
+
+        MetricsSnapshot.Histogram snapshot() {
+            long[] bucketCounts = new long[buckets.length()];
+            long count = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                bucketCounts[i] = buckets.get(i);
+                count += bucketCounts[i];
+            }
+            return new MetricsSnapshot.Histogram(count, totalNanos.get(), maxNanos.get(), bucketCounts);
+        }
+    }
+
+    static final class ConsumerKey {
+        private final Class<?> consumerClass;
+        private final Class<?> eventType;
+        private final ThreadMode threadMode;
+
+        ConsumerKey(Class<?> consumerClass, Class<?> eventType, ThreadMode threadMode) {
+            this.consumerClass = consumerClass;
+            this.eventType = eventType;
+            this.threadMode = threadMode;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ConsumerKey)) {
+                return false;
+            }
+            ConsumerKey otherKey = (ConsumerKey) other;
+            return consumerClass == otherKey.consumerClass && eventType == otherKey.eventType
+                    && threadMode == otherKey.threadMode;
+        }
+
+        @Override
+        public int hashCode() {
+            return (consumerClass.hashCode() * 31 + eventType.hashCode()) * 31 + threadMode.hashCode();
+        }
+    }
+
+    static final class SubscriberMethodCounters {
+        /** The declaring class of the subscriber method or the class of the {@link EventConsumer}. */
+        private final Class<?> subscriberClass;
+        private final SubscriberMethod subscriberMethod;
+        private final AtomicLong deliveries = new AtomicLong();
+        private final AtomicLong exceptions = new AtomicLong();
+        private final HistogramRecorder executionTimes = new HistogramRecorder();
+
+        SubscriberMethodCounters(Class<?> subscriberClass, SubscriberMethod subscriberMethod) {
+            this.subscriberClass = subscriberClass;
+            this.subscriberMethod = subscriberMethod;
+        }
+
+        void recordDelivery(long nanos, boolean exception) {
+            deliveries.incrementAndGet();
+            if (exception) {
+                exceptions.incrementAndGet();
+            }
+            executionTimes.record(nanos);
+        }
+
+        MetricsSnapshot.SubscriberMetrics snapshot() {
+            return new MetricsSnapshot.SubscriberMetrics(subscriberClass, subscriberMethod.methodName,
+                    subscriberMethod.eventType, subscriberMethod.threadMode, deliveries.get(), exceptions.get(),
+                    executionTimes.snapshot());
+        }
+    }
+}
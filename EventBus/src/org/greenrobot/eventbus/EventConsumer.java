@@ -0,0 +1,25 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+/**
+ * Receives events subscribed to with {@link EventBus#subscribe(Class, EventConsumer)} or its variants. Unlike
+ * subscribers with {@link Subscribe} annotated methods, no reflection is involved, so it's well suited for lambdas
+ * and other short-lived listeners.
+ */
+public interface EventConsumer<T> {
+    void onEvent(T event);
+}
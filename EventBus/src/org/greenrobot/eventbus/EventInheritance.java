@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Overrides {@link EventBusBuilder#eventInheritance(boolean)} for an event class and its subclasses (unless they
+ * are configured themselves). With inheritance disabled, posting an event of this class only reaches subscribers of
+ * the exact class, and sticky subscribers of supertypes do not get its sticky events. Configuration using
+ * {@link EventBusBuilder#eventInheritance(Class, boolean)} takes precedence over this annotation.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})// 作用在event类上
+public @interface EventInheritance {
+    // 发送此类事件时，是否也发送给订阅了父类和接口的订阅者
+    boolean value() default true;
+}
@@ -32,7 +32,7 @@ public class HandlerPoster extends Handler implements Poster {
         super(looper);
         this.eventBus = eventBus;
         this.maxMillisInsideHandleMessage = maxMillisInsideHandleMessage;
-        queue = new PendingPostQueue();
+        queue = new PendingPostQueue(eventBus.isCollectingMetrics());
     }
 
     public void enqueue(Subscription subscription, Object event) {
@@ -86,4 +86,9 @@ public class HandlerPoster extends Handler implements Poster {
             handlerActive = rescheduled;
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getQueueDepth() {
+        return queue.size();
+    }
+}
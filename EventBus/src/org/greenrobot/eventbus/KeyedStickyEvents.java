@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The keyed sticky events of one event type, see {@link EventBus#postKeyedSticky(Object, Object)}. Keeps the most
+ * recent event per key in least recently used order and evicts the oldest keys once the limits are exceeded. Each
+ * update only touches its own key; unlike a sticky event holding a map, nothing gets copied.
+ */
+final class KeyedStickyEvents {
+
+    /** Limits for one event type as configured in {@link EventBusBuilder}; 0 means no limit. */
+    static final class Limits {
+        final int maxKeys;
+        final long maxWeight;
+        final StickyEventWeigher weigher;
+
+        Limits(int maxKeys, long maxWeight, StickyEventWeigher weigher) {
+            this.maxKeys = maxKeys;
+            this.maxWeight = maxWeight;
+            this.weigher = weigher;
+        }
+    }
+
+    private static final class Entry {
+        final Object event;
+        final long weight;
+
+        Entry(Object event, long weight) {
+            this.event = event;
+            this.weight = weight;
+        }
+    }
+
+    private final int maxKeys;
+    private final long maxWeight;
+    private final StickyEventWeigher weigher;
+
+    //accessOrder为true：get和put都会把key移到最后，第一个就是最久没用的
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    KeyedStickyEvents(Limits limits) {
+        if (limits != null) {
+            maxKeys = limits.maxKeys;
+            maxWeight = limits.maxWeight;
+            weigher = limits.weigher;
+        } else {
+            maxKeys = 0;
+            maxWeight = 0;
+            weigher = null;
+        }
+    }
+
+    synchronized Object get(Object key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.event : null;
+    }
+
+    /** @return the previous event for the key, or null */
+    synchronized Object put(Object key, Object event) {
+        long eventWeight = weigher != null ? weigher.weigh(key, event) : 0;
+        if (eventWeight < 0) {
+            throw new EventBusException("Negative weight " + eventWeight + " for " + event);
+        }
+        Entry previous = entries.put(key, new Entry(event, eventWeight));
+        weight += eventWeight;
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        evictIfNeeded();
+        return previous != null ? previous.event : null;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext() && isOverLimit()) {
+            weight -= iterator.next().weight;
+            iterator.remove();
+        }
+    }
+
+    private boolean isOverLimit() {
+        return (maxKeys > 0 && entries.size() > maxKeys) || (maxWeight > 0 && weight > maxWeight);
+    }
+
+    /** @return the removed event, or null */
+    synchronized Object remove(Object key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.weight;
+            return removed.event;
+        }
+        return null;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    synchronized long getWeight() {
+        return weight;
+    }
+
+    /** Copy of all retained events by key, least recently used first; does not count as use. */
+    synchronized <T> Map<Object, T> copyEvents(Class<T> eventType) {
+        Map<Object, T> copy = new LinkedHashMap<>(entries.size() * 4 / 3 + 1);
+        for (Map.Entry<Object, Entry> entry : entries.entrySet()) {
+            copy.put(entry.getKey(), eventType.cast(entry.getValue().event));
+        }
+        return copy;
+    }
+
+    /** All retained events, least recently used first; does not count as use. */
+    synchronized List<Object> copyEvents() {
+        List<Object> events = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            events.add(entry.event);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.greenrobot.eventbus.meta.EnumerableSubscriberInfoIndex;
+import org.greenrobot.eventbus.meta.SubscriberInfo;
+import org.greenrobot.eventbus.meta.SubscriberInfoIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combines all indexes added to an EventBus, so looking up a class does not query each index in turn. Indexes which
+ * can list their classes ({@link EnumerableSubscriberInfoIndex}, e.g. generated ones) are merged into a table
+ * pointing to the responsible index; other indexes are queried in order. Results including misses (e.g.
+ * superclasses without subscriber methods) are cached, so each class is looked up only once.
+ */
+final class MergedSubscriberInfoIndex implements EnumerableSubscriberInfoIndex {
+    /** Cached for classes no index knows about (null means not looked up yet). */
+    private static final Object NO_INFO = new Object();
+
+    /** In order of addition, which takes precedence if multiple indexes know a class. */
+    private final List<SubscriberInfoIndex> indexes;
+    private final Map<String, SubscriberInfoIndex> indexByClassName = new HashMap<>();
+    /** Does not keep subscriber classes (and their class loaders) alive, see {@link ClassCache}. */
+    private final ClassCache<Object> infoByClass = ClassCache.create();
+
+    MergedSubscriberInfoIndex(List<SubscriberInfoIndex> indexes) {
+        this.indexes = new ArrayList<>(indexes);
+        for (SubscriberInfoIndex index : this.indexes) {
+            if (index instanceof EnumerableSubscriberInfoIndex) {
+                for (String className : ((EnumerableSubscriberInfoIndex) index).getSubscriberClassNames()) {
+                    if (!indexByClassName.containsKey(className)) {
+                        indexByClassName.put(className, index);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public SubscriberInfo getSubscriberInfo(Class<?> subscriberClass) {
+        Object info = infoByClass.get(subscriberClass);
+        if (info == null) {
+            info = lookUpSubscriberInfo(subscriberClass);
+            infoByClass.put(subscriberClass, info != null ? info : NO_INFO);
+        }
+        return info != NO_INFO ? (SubscriberInfo) info : null;
+    }
+
+    private SubscriberInfo lookUpSubscriberInfo(Class<?> subscriberClass) {
+        SubscriberInfoIndex mergedIndex = indexByClassName.get(subscriberClass.getName());
+        for (SubscriberInfoIndex index : indexes) {
+            // Enumerable indexes not listing the class cannot know it
+            if (index == mergedIndex || !(index instanceof EnumerableSubscriberInfoIndex)) {
+                SubscriberInfo info = index.getSubscriberInfo(subscriberClass);
+                if (info != null) {
+                    return info;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Class<?>[] getSubscriberClasses() {
+        List<Class<?>> subscriberClasses = new ArrayList<>();
+        for (SubscriberInfoIndex index : indexes) {
+            if (index instanceof EnumerableSubscriberInfoIndex) {
+                Collections.addAll(subscriberClasses, ((EnumerableSubscriberInfoIndex) index).getSubscriberClasses());
+            }
+        }
+        return subscriberClasses.toArray(new Class<?>[subscriberClasses.size()]);
+    }
+
+    @Override
+    public String[] getSubscriberClassNames() {
+        return indexByClassName.keySet().toArray(new String[indexByClassName.size()]);
+    }
+
+}
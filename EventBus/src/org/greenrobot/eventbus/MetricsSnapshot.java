@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Point-in-time copy of the metrics of an EventBus built with {@link EventBusBuilder#collectMetrics(boolean)}, see
+ * {@link EventBus#getMetrics()}. All counts are totals since the EventBus was created.
+ */
+public final class MetricsSnapshot {
+    private static final Histogram EMPTY_HISTOGRAM = new Histogram(0, 0, 0, new long[Histogram.BUCKET_COUNT]);
+
+    private final Map<Class<?>, EventTypeMetrics> eventTypes;
+    private final List<SubscriberMetrics> subscribers;
+    private final Map<String, QueueMetrics> queues;
+
+    MetricsSnapshot(Map<Class<?>, EventTypeMetrics> eventTypes, List<SubscriberMetrics> subscribers,
+                    Map<String, QueueMetrics> queues) {
+        this.eventTypes = eventTypes;
+        this.subscribers = subscribers;
+        this.queues = queues;
+    }
+
+    /** Unmodifiable map of the metrics of all event classes posted so far. */
+    public Map<Class<?>, EventTypeMetrics> getEventTypes() {
+        return eventTypes;
+    }
+
+    /** Metrics of the given event class; all zero if it was not posted. */
+    public EventTypeMetrics getEventType(Class<?> eventType) {
+        EventTypeMetrics metrics = eventTypes.get(eventType);
+        return metrics != null ? metrics : new EventTypeMetrics(eventType, 0, 0, 0, EMPTY_HISTOGRAM);
+    }
+
+    /** Unmodifiable list of the metrics of all subscriber methods invoked so far, in no particular order. */
+    public List<SubscriberMetrics> getSubscribers() {
+        return subscribers;
+    }
+
+    /**
+     * Unmodifiable map of the queues of the posters by name: "main" (only with main thread support, used by
+     * {@link ThreadMode#MAIN} and {@link ThreadMode#MAIN_ORDERED}), "background" and "async".
+     */
+    public Map<String, QueueMetrics> getQueues() {
+        return queues;
+    }
+
+    /** Counters of one event class; these count events posted with exactly this class. */
+    public static final class EventTypeMetrics {
+        private final Class<?> eventType;
+        private final long posts;
+        private final long noSubscriberPosts;
+        private final long cancellations;
+        private final Histogram queueWaitTimes;
+
+        EventTypeMetrics(Class<?> eventType, long posts, long noSubscriberPosts, long cancellations,
+                         Histogram queueWaitTimes) {
+            this.eventType = eventType;
+            this.posts = posts;
+            this.noSubscriberPosts = noSubscriberPosts;
+            this.cancellations = cancellations;
+            this.queueWaitTimes = queueWaitTimes;
+        }
+
+        public Class<?> getEventType() {
+            return eventType;
+        }
+
+        /** Events posted, including sticky and replayed events when posted (but not when delivered later). */
+        public long getPosts() {
+            return posts;
+        }
+
+        /** Posted events that found no subscriber, see {@link NoSubscriberEvent}. */
+        public long getNoSubscriberPosts() {
+            return noSubscriberPosts;
+        }
+
+        /** Deliveries stopped by {@link EventBus#cancelEventDelivery(Object)}. */
+        public long getCancellations() {
+            return cancellations;
+        }
+
+        /** Time events of this class waited in a poster queue until their subscriber was invoked, all posters. */
+        public Histogram getQueueWaitTimes() {
+            return queueWaitTimes;
+        }
+
+        @Override
+        public String toString() {
+            return "EventTypeMetrics[" + eventType.getName() + ", posts=" + posts + ", noSubscriberPosts="
+                    + noSubscriberPosts + ", cancellations=" + cancellations + ", queueWaitTimes=" + queueWaitTimes
+                    + "]";
+        }
+    }
+
+    /** A poster queue of queued thread modes, see {@link #getQueues()}. */
+    public static final class QueueMetrics {
+        private final String name;
+        private final int depth;
+        private final Histogram waitTimes;
+
+        QueueMetrics(String name, int depth, Histogram waitTimes) {
+            this.name = name;
+            this.depth = depth;
+            this.waitTimes = waitTimes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** Events waiting in the queue when the snapshot was taken. */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Time from enqueuing an event until its subscriber was invoked. Rising wait times with a low depth point to
+         * slow subscribers; a growing depth means the poster cannot keep up.
+         */
+        public Histogram getWaitTimes() {
+            return waitTimes;
+        }
+
+        @Override
+        public String toString() {
+            return "QueueMetrics[" + name + ", depth=" + depth + ", waitTimes=" + waitTimes + "]";
+        }
+    }
+
+    /** Counters of one subscriber method, summed over all subscriber instances. */
+    public static final class SubscriberMetrics {
+        private final Class<?> subscriberClass;
+        private final String methodName;
+        private final Class<?> eventType;
+        private final ThreadMode threadMode;
+        private final long deliveries;
+        private final long exceptions;
+        private final Histogram executionTimes;
+
+        SubscriberMetrics(Class<?> subscriberClass, String methodName, Class<?> eventType, ThreadMode threadMode,
+                          long deliveries, long exceptions, Histogram executionTimes) {
+            this.subscriberClass = subscriberClass;
+            this.methodName = methodName;
+            this.eventType = eventType;
+            this.threadMode = threadMode;
+            this.deliveries = deliveries;
+            this.exceptions = exceptions;
+            this.executionTimes = executionTimes;
+        }
+
+        /** The class declaring the subscriber method, or the class of the {@link EventConsumer}. */
+        public Class<?> getSubscriberClass() {
+            return subscriberClass;
+        }
+
+        /**
+         * Null for {@link EventConsumer}s, which share the metrics of their consumer class, event type and thread mode
+         * (e.g. all consumers created by the same lambda expression with the same thread mode).
+         */
+        public String getMethodName() {
+            return methodName;
+        }
+
+        public Class<?> getEventType() {
+            return eventType;
+        }
+
+        public ThreadMode getThreadMode() {
+            return threadMode;
+        }
+
+        /** Times the subscriber method was invoked. */
+        public long getDeliveries() {
+            return deliveries;
+        }
+
+        /** Invocations that threw an exception. */
+        public long getExceptions() {
+            return exceptions;
+        }
+
+        /** Execution times of all invocations, including the ones that threw. */
+        public Histogram getExecutionTimes() {
+            return executionTimes;
+        }
+
+        @Override
+        public String toString() {
+            String name = methodName != null ? subscriberClass.getName() + "#" + methodName : subscriberClass.getName();
+            return "SubscriberMetrics[" + name + "(" + eventType.getName() + "), deliveries=" + deliveries
+                    + ", exceptions=" + exceptions + ", executionTimes=" + executionTimes + "]";
+        }
+    }
+
+    /**
+     * Histogram with power of two buckets: bucket i counts values of at least 2^(i-1) ns and below 2^i ns (bucket 0
+     * counts zeros). Percentiles are thus accurate within a factor of two.
+     */
+    public static final class Histogram {
+        static final int BUCKET_COUNT = 64;
+
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] bucketCounts;
+
+        Histogram(long count, long totalNanos, long maxNanos, long[] bucketCounts) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.bucketCounts = bucketCounts;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getMeanNanos() {
+            return count > 0 ? totalNanos / count : 0;
+        }
+
+        public int getBucketCount() {
+            return BUCKET_COUNT;
+        }
+
+        /** The number of values in the given bucket. */
+        public long getBucketValueCount(int bucket) {
+            return bucketCounts[bucket];
+        }
+
+        /** The largest value counted by the given bucket (exclusive bound minus one). */
+        public static long getBucketUpperBoundNanos(int bucket) {
+            return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+
+        /**
+         * Estimates the given percentile (0 to 100) as the upper bound of the bucket it falls into, capped by the
+         * max value. Zero if there are no values.
+         */
+        public long getPercentileNanos(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+            }
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                seen += bucketCounts[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(getBucketUpperBoundNanos(i), maxNanos);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Histogram[count=" + count + ", meanNanos=" + getMeanNanos() + ", p50Nanos="
+                    + getPercentileNanos(50) + ", p99Nanos=" + getPercentileNanos(99) + ", maxNanos=" + maxNanos + "]";
+        }
+    }
+}
@@ -24,6 +24,8 @@ final class PendingPost {
     Object event;
     Subscription subscription;
     PendingPost next;
+    /** {@link System#nanoTime()} when it was added to a {@link PendingPostQueue}. */
+    long enqueuedNanos;
 
     //构造函数
     private PendingPost(Object event, Subscription subscription) {
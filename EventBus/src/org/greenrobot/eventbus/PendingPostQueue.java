@@ -19,11 +19,21 @@ package org.greenrobot.eventbus;
 final class PendingPostQueue {
     private PendingPost head;
     private PendingPost tail;
+    private int size;
+    private final boolean recordEnqueueTime;
+
+    PendingPostQueue(boolean recordEnqueueTime) {
+        this.recordEnqueueTime = recordEnqueueTime;
+    }
 
     synchronized void enqueue(PendingPost pendingPost) {
         if (pendingPost == null) {
             throw new NullPointerException("null cannot be enqueued");
         }
+        // 入队时间，用来统计从入队到订阅方法开始执行的等待时间；未开启统计时省去nanoTime调用
+        if (recordEnqueueTime) {
+            pendingPost.enqueuedNanos = System.nanoTime();
+        }
         if (tail != null) {
             tail.next = pendingPost;
             tail = pendingPost;
@@ -32,6 +42,7 @@ final class PendingPostQueue {
         } else {
             throw new IllegalStateException("Head present, but no tail");
         }
+        size++;
         notifyAll();
     }
 
@@ -42,6 +53,7 @@ final class PendingPostQueue {
             if (head == null) {
                 tail = null;
             }
+            size--;
         }
         return pendingPost;
     }
@@ -53,4 +65,9 @@ final class PendingPostQueue {
         return poll();
     }
 
+    /** The number of pending posts waiting in the queue. */
+    synchronized int size() {
+        return size;
+    }
+
 }
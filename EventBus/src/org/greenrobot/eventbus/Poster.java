@@ -30,4 +30,7 @@ interface Poster {
      * @param event        Event that will be posted to subscribers.
      */
     void enqueue(Subscription subscription, Object event);
+
+    /** The number of events waiting to be posted. */
+    int getQueueDepth();
 }
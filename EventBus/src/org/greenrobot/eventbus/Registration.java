@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+/**
+ * Handle returned by {@link EventBus#register(Object)} and {@link EventBus#subscribe(Class, EventConsumer)}.
+ * Unregistering through the handle is equivalent to {@link EventBus#unregister(Object)}, but it does not have to look
+ * up the subscriber. Both take time proportional to
+ * the number of the subscriber's event handling methods, independent of how many other subscribers there are.
+ */
+public final class Registration {
+    private final EventBus eventBus;
+    /** Null for weak registrations. */
+    private final Object subscriber;
+    /** Only set for weak registrations, see {@link EventBus#registerWeakly(Object)}. */
+    final WeakSubscriber weakSubscriber;
+    final List<Subscription> subscriptions;
+    /** Guarded by the EventBus. */
+    boolean registered = true;
+
+    Registration(EventBus eventBus, Object subscriber, List<Subscription> subscriptions) {
+        this.eventBus = eventBus;
+        this.subscriber = subscriber;
+        this.weakSubscriber = null;
+        this.subscriptions = subscriptions;
+    }
+
+    Registration(EventBus eventBus, Object subscriber, ReferenceQueue<Object> queue, List<Subscription> subscriptions) {
+        this.eventBus = eventBus;
+        this.subscriber = null;
+        this.weakSubscriber = new WeakSubscriber(subscriber, queue, this);
+        this.subscriptions = subscriptions;
+    }
+
+    /** Null if the subscriber was registered weakly and has been garbage collected. */
+    Object getSubscriber() {
+        return weakSubscriber == null ? subscriber : weakSubscriber.get();
+    }
+
+    /** Unregisters the subscriber; does nothing if it was already unregistered. */
+    public void unregister() {
+        eventBus.unregister(this);
+    }
+
+    /** False once the subscriber was unregistered (using this handle or the EventBus) or garbage collected. */
+    public boolean isRegistered() {
+        return eventBus.isRegistered(this);
+    }
+
+    /** Enqueued once the subscriber is garbage collected, so the EventBus can purge the registration. */
+    static final class WeakSubscriber extends WeakReference<Object> {
+        final Registration registration;
+
+        WeakSubscriber(Object subscriber, ReferenceQueue<Object> queue, Registration registration) {
+            super(subscriber, queue);
+            this.registration = registration;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The replay buffers of all event types configured with {@link EventBusBuilder#replay(Class, int)}: each retains the
+ * last N events of its type (optionally only the ones younger than a max age) in a fixed-size ring, which is
+ * allocated once. Sticky subscribers get the retained events in posting order when they register.
+ * <p/>
+ * All access must be synchronized on this object. Recording an event together with taking the subscription snapshot
+ * it is posted to, and adding a sticky subscription together with replaying to it, must each happen in one
+ * synchronized block; this way every event reaches a new subscriber exactly once, either replayed or live.
+ */
+final class ReplayBuffers {
+
+    /** Ring buffer of one event type. */
+    static final class ReplayBuffer {
+        final Class<?> eventType;
+        private final long maxAgeNanos;
+        private final Object[] events;
+        private final long[] sequences;
+        /** Only allocated with a max age. */
+        private final long[] times;
+        /** Index of the oldest event. */
+        private int head;
+        private int size;
+
+        ReplayBuffer(Class<?> eventType, int maxEvents, long maxAgeNanos) {
+            this.eventType = eventType;
+            this.maxAgeNanos = maxAgeNanos;
+            events = new Object[maxEvents];
+            sequences = new long[maxEvents];
+            times = maxAgeNanos > 0 ? new long[maxEvents] : null;
+        }
+
+        void add(Object event, long sequence) {
+            int index = (head + size) % events.length;
+            if (size == events.length) {
+                // Full: overwrite the oldest
+                head = (head + 1) % events.length;
+            } else {
+                size++;
+            }
+            events[index] = event;
+            sequences[index] = sequence;
+            if (times != null) {
+                times[index] = System.nanoTime();
+                dropExpired(times[index]);
+            }
+        }
+
+        private void dropExpired(long now) {
+            while (size > 0 && now - times[head] > maxAgeNanos) {
+                events[head] = null;
+                head = (head + 1) % events.length;
+                size--;
+            }
+        }
+
+        private void collect(List<Object> target, List<Long> targetSequences) {
+            if (times != null) {
+                dropExpired(System.nanoTime());
+            }
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) % events.length;
+                target.add(events[index]);
+                if (targetSequences != null) {
+                    targetSequences.add(sequences[index]);
+                }
+            }
+        }
+    }
+
+    /** Configuration of one event type as given to {@link EventBusBuilder}. */
+    static final class Config {
+        final int maxEvents;
+        final long maxAgeNanos;
+
+        Config(int maxEvents, long maxAgeNanos) {
+            this.maxEvents = maxEvents;
+            this.maxAgeNanos = maxAgeNanos;
+        }
+    }
+
+    /** Not modified after construction, so lookups need no lock. */
+    private final Map<Class<?>, ReplayBuffer> buffers;
+    /** Orders events across buffers. */
+    private long sequence;
+
+    ReplayBuffers(Map<Class<?>, Config> configs) {
+        buffers = new HashMap<>();
+        for (Map.Entry<Class<?>, Config> entry : configs.entrySet()) {
+            Config config = entry.getValue();
+            buffers.put(entry.getKey(), new ReplayBuffer(entry.getKey(), config.maxEvents, config.maxAgeNanos));
+        }
+    }
+
+    /** Null if events of exactly this type are not replayed; does not need to be synchronized. */
+    ReplayBuffer get(Class<?> eventType) {
+        return buffers.get(eventType);
+    }
+
+    // Must be called synchronized on this
+    void record(ReplayBuffer buffer, Object event) {
+        buffer.add(event, ++sequence);
+    }
+
+    /** Does not need to be synchronized. */
+    Collection<ReplayBuffer> getBuffers() {
+        return buffers.values();
+    }
+
+    /** The retained events of exactly the given type in posting order. Must be called synchronized on this. */
+    List<Object> getEvents(Class<?> eventType) {
+        ReplayBuffer buffer = buffers.get(eventType);
+        if (buffer == null) {
+            return Collections.emptyList();
+        }
+        List<Object> events = new ArrayList<>(buffer.size);
+        buffer.collect(events, null);
+        return events;
+    }
+
+    /**
+     * The retained events of the given buffers merged in posting order, e.g. the ones a subscriber to a supertype gets.
+     * Must be called synchronized on this.
+     */
+    List<Object> getEvents(List<ReplayBuffer> selectedBuffers) {
+        List<Object> events = new ArrayList<>();
+        List<Long> sequences = new ArrayList<>();
+        for (ReplayBuffer buffer : selectedBuffers) {
+            buffer.collect(events, sequences);
+        }
+        return selectedBuffers.size() > 1 ? sortBySequence(events, sequences) : events;
+    }
+
+    private static List<Object> sortBySequence(List<Object> events, final List<Long> sequences) {
+        List<Integer> order = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                long lhsSequence = sequences.get(lhs);
+                long rhsSequence = sequences.get(rhs);
+                return lhsSequence < rhsSequence ? -1 : (lhsSequence == rhsSequence ? 0 : 1);
+            }
+        });
+        List<Object> sorted = new ArrayList<>(events.size());
+        for (Integer index : order) {
+            sorted.add(events.get(index));
+        }
+        return sorted;
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+/**
+ * Gets reports of subscribers exceeding the threshold given to
+ * {@link EventBusBuilder#slowSubscriberWatchdog(long, java.util.concurrent.TimeUnit, boolean, SlowSubscriberListener)}.
+ * Called on the watchdog thread while the subscriber is still running, or on the subscriber's thread right after it
+ * finished if the watchdog did not catch it in time. Each slow delivery is reported once. Must return quickly.
+ */
+public interface SlowSubscriberListener {
+    void onSlowSubscriber(SlowSubscriberReport report);
+}
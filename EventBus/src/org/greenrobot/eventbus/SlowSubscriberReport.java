@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+/** A delivery that took longer than the watchdog threshold, see {@link SlowSubscriberListener}. */
+public final class SlowSubscriberReport {
+    private final Class<?> subscriberClass;
+    private final String methodName;
+    private final Class<?> eventType;
+    private final ThreadMode threadMode;
+    private final String threadName;
+    private final long elapsedNanos;
+    private final boolean finished;
+    private final StackTraceElement[] stackTrace;
+
+    SlowSubscriberReport(Class<?> subscriberClass, String methodName, Class<?> eventType, ThreadMode threadMode,
+                         String threadName, long elapsedNanos, boolean finished, StackTraceElement[] stackTrace) {
+        this.subscriberClass = subscriberClass;
+        this.methodName = methodName;
+        this.eventType = eventType;
+        this.threadMode = threadMode;
+        this.threadName = threadName;
+        this.elapsedNanos = elapsedNanos;
+        this.finished = finished;
+        this.stackTrace = stackTrace;
+    }
+
+    /** The class of the subscriber instance (or of the {@link EventConsumer}). */
+    public Class<?> getSubscriberClass() {
+        return subscriberClass;
+    }
+
+    /** The name of the subscriber method; null for {@link EventConsumer}s. */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /** The class of the event being delivered. */
+    public Class<?> getEventType() {
+        return eventType;
+    }
+
+    public ThreadMode getThreadMode() {
+        return threadMode;
+    }
+
+    /** The name of the thread running the subscriber. */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /** How long the subscriber had been running when reported, or its total time if it has finished. */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** True if the subscriber had already returned when it was reported; there is no stack trace then. */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /** A sample of the subscriber's thread stack while it was running; null unless stack traces were requested. */
+    public StackTraceElement[] getStackTrace() {
+        return stackTrace;
+    }
+
+    @Override
+    public String toString() {
+        String name = methodName != null ? subscriberClass.getName() + "#" + methodName : subscriberClass.getName();
+        return "SlowSubscriberReport[" + name + "(" + eventType.getName() + "), thread=" + threadName
+                + ", elapsedNanos=" + elapsedNanos + (finished ? ", finished" : "") + "]";
+    }
+}
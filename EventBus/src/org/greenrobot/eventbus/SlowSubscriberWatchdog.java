@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Flags deliveries running longer than a threshold, see
+ * {@link EventBusBuilder#slowSubscriberWatchdog(long, TimeUnit, boolean, SlowSubscriberListener)}.
+ * <p/>
+ * Each thread delivering events has a {@link Slot} describing its current delivery. Entering and exiting a delivery
+ * only writes to the thread's own slot; a daemon thread scans all slots a few times per threshold and reports (and
+ * optionally samples the stack of) deliveries that have been running for too long. Deliveries that became slow after
+ * the last scan are reported by their own thread when they finish. The daemon thread ends once the EventBus is
+ * garbage collected.
+ */
+final class SlowSubscriberWatchdog {
+
+    /**
+     * The delivery state of one thread. An odd sequence means a delivery is running; the fields describing it are
+     * written before the sequence, so a scan reading the same odd sequence before and after the fields has read a
+     * consistent delivery.
+     */
+    static final class Slot {
+        /** Weak, so slots of terminated threads can be purged. */
+        final WeakReference<Thread> thread;
+        volatile int sequence;
+        volatile Subscription subscription;
+        volatile Class<?> eventType;
+        volatile long startNanos;
+        /** The last sequence reported, so the watchdog and the delivering thread report a delivery only once. */
+        final AtomicInteger reportedSequence = new AtomicInteger();
+
+        Slot(Thread thread) {
+            this.thread = new WeakReference<>(thread);
+        }
+    }
+
+    private final long thresholdNanos;
+    private final boolean captureStackTraces;
+    private final SlowSubscriberListener listener;
+    private final Logger logger;
+    private final List<Slot> slots = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Slot> currentSlot = new ThreadLocal<Slot>() {
+        @Override
+        protected Slot initialValue() {
+            Slot slot = new Slot(Thread.currentThread());
+            slots.add(slot);
+            return slot;
+        }
+    };
+
+    SlowSubscriberWatchdog(long thresholdNanos, boolean captureStackTraces, SlowSubscriberListener listener,
+                           Logger logger) {
+        this.thresholdNanos = thresholdNanos;
+        this.captureStackTraces = captureStackTraces;
+        this.listener = listener;
+        this.logger = logger;
+        // Scanning twice per threshold reports a stuck delivery at most 1.5 thresholds after it started
+        long intervalMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(thresholdNanos / 2));
+        Thread thread = new Thread(new Scanner(this, intervalMillis), "EventBus slow subscriber watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Marks the start of a delivery on the current thread. Deliveries nested in another one (posting from a
+     * subscriber) are covered by the outer one, and {@link ThreadMode#ASYNC} subscribers, which are meant for long
+     * running work, are not watched.
+     *
+     * @return the slot to pass to {@link #exit(Slot)} or null if the delivery is not watched
+     */
+    Slot enter(Subscription subscription, Object event) {
+        if (subscription.subscriberMethod.threadMode == ThreadMode.ASYNC) {
+            return null;
+        }
+        Slot slot = currentSlot.get();
+        int sequence = slot.sequence;
+        if ((sequence & 1) != 0) {
+            return null;
+        }
+        slot.subscription = subscription;
+        slot.eventType = event.getClass();
+        slot.startNanos = System.nanoTime();
+        slot.sequence = sequence + 1;
+        return slot;
+    }
+
+    void exit(Slot slot) {
+        int sequence = slot.sequence;
+        long elapsedNanos = System.nanoTime() - slot.startNanos;
+        Subscription subscription = slot.subscription;
+        Class<?> eventType = slot.eventType;
+        slot.sequence = sequence + 1;
+        // Don't keep the subscriber reachable
+        slot.subscription = null;
+        slot.eventType = null;
+        if (elapsedNanos >= thresholdNanos && slot.reportedSequence.getAndSet(sequence) != sequence) {
+            report(subscription, eventType, Thread.currentThread(), elapsedNanos, true, null);
+        }
+    }
+
+    /** Called by the scanner thread. */
+    void scan() {
+        long now = System.nanoTime();
+        for (Slot slot : slots) {
+            Thread thread = slot.thread.get();
+            if (thread == null || !thread.isAlive()) {
+                slots.remove(slot);
+                continue;
+            }
+            int sequence = slot.sequence;
+            if ((sequence & 1) == 0 || slot.reportedSequence.get() == sequence) {
+                continue;
+            }
+            Subscription subscription = slot.subscription;
+            Class<?> eventType = slot.eventType;
+            long elapsedNanos = now - slot.startNanos;
+            if (elapsedNanos < thresholdNanos) {
+                continue;
+            }
+            StackTraceElement[] stackTrace = captureStackTraces ? thread.getStackTrace() : null;
+            // Still the same delivery? Otherwise the fields or the stack trace may belong to another one
+            if (slot.sequence == sequence && subscription != null &&
+                    slot.reportedSequence.getAndSet(sequence) != sequence) {
+                report(subscription, eventType, thread, elapsedNanos, false, stackTrace);
+            }
+        }
+    }
+
+    private void report(Subscription subscription, Class<?> eventType, Thread thread, long elapsedNanos,
+                        boolean finished, StackTraceElement[] stackTrace) {
+        Object subscriber = subscription.getSubscriber();
+        SubscriberMethod subscriberMethod = subscription.subscriberMethod;
+        Class<?> subscriberClass = subscriber != null ? subscriber.getClass() : subscriberMethod.declaringClass;
+        if (subscriberClass == null) {
+            // Garbage collected EventConsumer
+            subscriberClass = EventConsumer.class;
+        }
+        SlowSubscriberReport report = new SlowSubscriberReport(subscriberClass, subscriberMethod.methodName,
+                eventType, subscriberMethod.threadMode, thread.getName(), elapsedNanos, finished, stackTrace);
+        try {
+            listener.onSlowSubscriber(report);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Slow subscriber listener failed for " + report, e);
+        }
+    }
+
+    /** Holds the watchdog weakly, so it does not keep the EventBus alive. */
+    private static final class Scanner implements Runnable {
+        private final WeakReference<SlowSubscriberWatchdog> watchdogReference;
+        private final long intervalMillis;
+
+        Scanner(SlowSubscriberWatchdog watchdog, long intervalMillis) {
+            this.watchdogReference = new WeakReference<>(watchdog);
+            this.intervalMillis = intervalMillis;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                SlowSubscriberWatchdog watchdog = watchdogReference.get();
+                if (watchdog == null) {
+                    return;
+                }
+                watchdog.scan();
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.io.IOException;
+
+/**
+ * Converts sticky events to bytes and back for persisting them, see
+ * {@link EventBusBuilder#stickyPersistence(java.io.File, StickyEventCodec)}.
+ */
+public interface StickyEventCodec {
+    /** @return the encoded event, or null if events of this type should not be persisted */
+    byte[] encode(Object event) throws IOException;
+
+    /** @param eventType the class of the event that was encoded */
+    Object decode(Class<?> eventType, byte[] data) throws IOException;
+}
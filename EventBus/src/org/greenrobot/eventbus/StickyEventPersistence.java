@@ -0,0 +1,482 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Writes sticky events through a {@link StickyEventCodec} to an append-only log in a memory-mapped file, so they
+ * survive restarts. Each change of a type appends a record; only the last record per type counts. Once the log is
+ * mostly made of outdated records, it is compacted into a new file that replaces the old one. The old log stays in use
+ * until the new file is in place and mapped, so a failed compaction loses nothing; it is retried once the log grew.
+ * <p/>
+ * Loading only scans the record headers; an event is decoded when its type is first requested. Types that cannot be
+ * resolved (e.g. removed classes) are dropped on the first attempt and are discarded by the next compaction.
+ * <p/>
+ * Record layout: length of the rest (int), CRC32 of the body (int), body: operation (byte), expiry in wall clock
+ * millis or 0 (long), type name length (short), type name (UTF-8), encoded event (put records only). A record with an
+ * invalid length or checksum, e.g. a torn write, ends the log.
+ */
+final class StickyEventPersistence {
+
+    /** A persisted event as decoded, with the wall clock expiry (0 for events that do not expire). */
+    static final class PersistedEvent {
+        final Object event;
+        final long expiresAtMillis;
+
+        PersistedEvent(Object event, long expiresAtMillis) {
+            this.event = event;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    /** Location of the last put record of a type. */
+    private static final class Record {
+        final int offset;
+        final int length;
+        final long expiresAtMillis;
+
+        Record(int offset, int length, long expiresAtMillis) {
+            this.offset = offset;
+            this.length = length;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private static final int MAGIC = 0x45425331; // "EBS1"
+    private static final int HEADER_SIZE = 4;
+    /** Length and checksum. */
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final StickyEventCodec codec;
+    private final Logger logger;
+
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int appendPosition;
+    /** Compaction is not tried before the log reaches this size; raised after a failed compaction. */
+    private int minCompactionPosition = INITIAL_CAPACITY;
+    private boolean closed;
+
+    //类名 到 最后一条put记录的位置；remove后就删掉
+    private final Map<String, Record> records = new HashMap<>();
+    //还没解码的类名，第一次用到这个类型时才解码；修改要加锁，读不加锁
+    private final Set<String> undecoded = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /** Undecoded types resolved by {@link #getUndecodedTypesAssignableTo(Class)}, so each is resolved once. */
+    private final Map<String, Class<?>> resolvedTypes = new HashMap<>();
+    /** Size of the records in {@link #records}; compared to the log size to decide on compacting. */
+    private long liveBytes;
+    private volatile boolean hasUndecoded;
+
+    StickyEventPersistence(File file, StickyEventCodec codec, Logger logger) throws IOException {
+        this.file = file;
+        this.codec = codec;
+        this.logger = logger;
+        File oldFile = getOldFile();
+        if (!file.exists() && oldFile.isFile() && !oldFile.renameTo(file)) {
+            // Compaction was interrupted after moving the log aside
+            throw new IOException("Could not restore " + file + " from " + oldFile);
+        }
+        open();
+        try {
+            if (readMagic()) {
+                scanRecords();
+            } else {
+                if (buffer.getInt(0) != 0) {
+                    logger.log(Level.WARNING, "Ignoring sticky event file with unknown format: " + file);
+                }
+                buffer.putInt(0, MAGIC);
+                appendPosition = HEADER_SIZE;
+            }
+        } catch (RuntimeException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+        undecoded.addAll(records.keySet());
+        hasUndecoded = !undecoded.isEmpty();
+    }
+
+    private void open() throws IOException {
+        RandomAccessFile newFile = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel newChannel = newFile.getChannel();
+            long capacity = Math.max(newChannel.size(), INITIAL_CAPACITY);
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IOException("Sticky event file too large: " + file);
+            }
+            buffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            channel = newChannel;
+            randomAccessFile = newFile;
+        } catch (IOException | RuntimeException e) {
+            newFile.close();
+            throw e;
+        }
+    }
+
+    /** Flushes and closes the file; later changes are no longer persisted and nothing more is decoded. */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        undecoded.clear();
+        hasUndecoded = false;
+        try {
+            buffer.force();
+            randomAccessFile.close();
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Could not close sticky event file " + file, e);
+        }
+    }
+
+    private boolean readMagic() {
+        return buffer.getInt(0) == MAGIC;
+    }
+
+    private void scanRecords() {
+        long now = System.currentTimeMillis();
+        int position = HEADER_SIZE;
+        while (true) {
+            int length = position + RECORD_HEADER_SIZE <= buffer.capacity() ? buffer.getInt(position) : 0;
+            if (length <= 0 || length > buffer.capacity() - position - RECORD_HEADER_SIZE
+                    || buffer.getInt(position + 4) != checksum(buffer, position + RECORD_HEADER_SIZE, length)) {
+                break;
+            }
+            int bodyPosition = position + RECORD_HEADER_SIZE;
+            byte op = buffer.get(bodyPosition);
+            long expiresAtMillis = buffer.getLong(bodyPosition + 1);
+            String typeName = readTypeName(bodyPosition);
+            Record previous = records.remove(typeName);
+            if (previous != null) {
+                liveBytes -= RECORD_HEADER_SIZE + previous.length;
+            }
+            if (op == OP_PUT && (expiresAtMillis == 0 || expiresAtMillis > now)) {
+                records.put(typeName, new Record(position, length, expiresAtMillis));
+                liveBytes += RECORD_HEADER_SIZE + length;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        appendPosition = position;
+    }
+
+    private String readTypeName(int bodyPosition) {
+        int nameLength = buffer.getShort(bodyPosition + 9);
+        byte[] name = new byte[nameLength];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(bodyPosition + 11);
+        duplicate.get(name);
+        return new String(name, UTF_8);
+    }
+
+    private static int checksum(ByteBuffer buffer, int position, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position);
+        duplicate.limit(position + length);
+        byte[] bytes = new byte[length];
+        duplicate.get(bytes);
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    boolean hasUndecoded() {
+        return hasUndecoded;
+    }
+
+    /**
+     * Decodes the persisted event of the given type once; later calls and calls after the type was changed in the
+     * meantime return null. Does not lock unless the type has an undecoded event.
+     */
+    PersistedEvent decode(Class<?> eventType) {
+        String typeName = eventType.getName();
+        // Most types were not persisted or are decoded already
+        if (!undecoded.contains(typeName)) {
+            return null;
+        }
+        synchronized (this) {
+            if (!markDecoded(typeName)) {
+                return null;
+            }
+            return decode(eventType, records.get(typeName));
+        }
+    }
+
+    /** Must be called synchronized; false if the type was not undecoded. */
+    private boolean markDecoded(String typeName) {
+        if (!undecoded.remove(typeName)) {
+            return false;
+        }
+        resolvedTypes.remove(typeName);
+        hasUndecoded = !undecoded.isEmpty();
+        return true;
+    }
+
+    private PersistedEvent decode(Class<?> eventType, Record record) {
+        if (record.expiresAtMillis != 0 && record.expiresAtMillis <= System.currentTimeMillis()) {
+            return null;
+        }
+        int bodyPosition = record.offset + RECORD_HEADER_SIZE;
+        int dataPosition = bodyPosition + 11 + buffer.getShort(bodyPosition + 9);
+        byte[] data = new byte[record.offset + RECORD_HEADER_SIZE + record.length - dataPosition];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(dataPosition);
+        duplicate.get(data);
+        try {
+            Object event = codec.decode(eventType, data);
+            if (event != null && event.getClass() != eventType) {
+                throw new IOException("Decoded " + event.getClass() + " instead of " + eventType);
+            }
+            return event != null ? new PersistedEvent(event, record.expiresAtMillis) : null;
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Could not decode persisted sticky event of " + eventType, e);
+            return null;
+        }
+    }
+
+    /**
+     * Resolves the undecoded types assignable to the given type. Types that cannot be resolved and expired ones are
+     * dropped, so they are not tried again.
+     */
+    synchronized List<Class<?>> getUndecodedTypesAssignableTo(Class<?> eventType) {
+        List<Class<?>> types = new ArrayList<>();
+        ClassLoader classLoader = eventType.getClassLoader();
+        if (classLoader == null) {
+            classLoader = StickyEventPersistence.class.getClassLoader();
+        }
+        long now = System.currentTimeMillis();
+        for (String typeName : new ArrayList<>(undecoded)) {
+            Record record = records.get(typeName);
+            if (record.expiresAtMillis != 0 && record.expiresAtMillis <= now) {
+                dropRecord(typeName);
+                continue;
+            }
+            Class<?> type = resolvedTypes.get(typeName);
+            if (type == null) {
+                try {
+                    type = Class.forName(typeName, false, classLoader);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    logger.log(Level.WARNING, "Dropping persisted sticky event of unknown type " + typeName);
+                    dropRecord(typeName);
+                    continue;
+                }
+                resolvedTypes.put(typeName, type);
+            }
+            if (eventType.isAssignableFrom(type)) {
+                types.add(type);
+            }
+        }
+        return types;
+    }
+
+    /** Forgets an undecoded record, which is then discarded by the next compaction. */
+    private void dropRecord(String typeName) {
+        markDecoded(typeName);
+        Record record = records.remove(typeName);
+        if (record != null) {
+            liveBytes -= RECORD_HEADER_SIZE + record.length;
+        }
+    }
+
+    /**
+     * Persists the current sticky event of the given type, or its removal if event is null.
+     *
+     * @param expiresAtMillis wall clock expiry, or 0
+     */
+    synchronized void write(Class<?> eventType, Object event, long expiresAtMillis) {
+        if (closed) {
+            return;
+        }
+        String typeName = eventType.getName();
+        markDecoded(typeName);
+        try {
+            byte[] data = event != null ? codec.encode(event) : null;
+            if (data == null && !records.containsKey(typeName)) {
+                return;
+            }
+            appendRecord(typeName, data != null ? OP_PUT : OP_REMOVE, expiresAtMillis, data);
+            if (appendPosition > minCompactionPosition && appendPosition - HEADER_SIZE > 2 * liveBytes) {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    // The old log is still in use; don't copy it again on each write
+                    minCompactionPosition = appendPosition < Integer.MAX_VALUE / 2 ? 2 * appendPosition :
+                            Integer.MAX_VALUE;
+                    logger.log(Level.WARNING, "Could not compact sticky event file " + file, e);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Could not persist sticky event of " + eventType, e);
+        }
+    }
+
+    /** Persists the removal of all types, including the ones not decoded yet. */
+    synchronized void clear() {
+        if (closed) {
+            return;
+        }
+        for (String typeName : new ArrayList<>(records.keySet())) {
+            try {
+                appendRecord(typeName, OP_REMOVE, 0, null);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not persist removal of sticky event of " + typeName, e);
+            }
+        }
+        undecoded.clear();
+        resolvedTypes.clear();
+        hasUndecoded = false;
+    }
+
+    private void appendRecord(String typeName, byte op, long expiresAtMillis, byte[] data) throws IOException {
+        byte[] name = typeName.getBytes(UTF_8);
+        int length = 1 + 8 + 2 + name.length + (data != null ? data.length : 0);
+        ensureCapacity(appendPosition + RECORD_HEADER_SIZE + length);
+        int position = appendPosition;
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position + RECORD_HEADER_SIZE);
+        duplicate.put(op).putLong(expiresAtMillis).putShort((short) name.length).put(name);
+        if (data != null) {
+            duplicate.put(data);
+        }
+        buffer.putInt(position + 4, checksum(buffer, position + RECORD_HEADER_SIZE, length));
+        // Written last, so a torn record is never read
+        buffer.putInt(position, length);
+        appendPosition = position + RECORD_HEADER_SIZE + length;
+
+        Record previous = records.remove(typeName);
+        if (previous != null) {
+            liveBytes -= RECORD_HEADER_SIZE + previous.length;
+        }
+        if (op == OP_PUT) {
+            records.put(typeName, new Record(position, length, expiresAtMillis));
+            liveBytes += RECORD_HEADER_SIZE + length;
+        }
+    }
+
+    private void ensureCapacity(long capacity) throws IOException {
+        if (capacity > buffer.capacity()) {
+            long newCapacity = Math.max(capacity, 2L * buffer.capacity());
+            if (newCapacity > Integer.MAX_VALUE) {
+                throw new IOException("Sticky event file too large: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newCapacity);
+        }
+    }
+
+    /**
+     * Copies the live records to a new file, which then replaces the log. The old log is moved aside and stays mapped
+     * until the new file is in place and mapped; if anything fails, it is moved back and stays in use. State is then
+     * derived from the file actually mapped.
+     */
+    private void compact() throws IOException {
+        File compactedFile = new File(file.getPath() + ".compact");
+        if (compactedFile.exists() && !compactedFile.delete()) {
+            throw new IOException("Could not delete " + compactedFile);
+        }
+        long now = System.currentTimeMillis();
+        RandomAccessFile compacted = new RandomAccessFile(compactedFile, "rw");
+        try {
+            long capacity = Math.max(INITIAL_CAPACITY, 2 * liveBytes + HEADER_SIZE);
+            MappedByteBuffer target = compacted.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            target.putInt(MAGIC);
+            for (Record record : records.values()) {
+                if (record.expiresAtMillis != 0 && record.expiresAtMillis <= now) {
+                    continue;
+                }
+                ByteBuffer source = buffer.duplicate();
+                source.position(record.offset);
+                source.limit(record.offset + RECORD_HEADER_SIZE + record.length);
+                target.put(source);
+            }
+            target.force();
+        } finally {
+            compacted.close();
+        }
+
+        // 旧文件先改名保留，新文件就位并映射成功后才删除；任何一步失败都恢复旧文件并继续使用旧的映射
+        File oldFile = getOldFile();
+        buffer.force();
+        if (!file.renameTo(oldFile)) {
+            compactedFile.delete();
+            throw new IOException("Could not move " + file + " to " + oldFile);
+        }
+        if (!compactedFile.renameTo(file)) {
+            compactedFile.delete();
+            restoreOldFile(oldFile, false);
+            throw new IOException("Could not replace " + file + " with " + compactedFile);
+        }
+        RandomAccessFile oldRandomAccessFile = randomAccessFile;
+        FileChannel oldChannel = channel;
+        MappedByteBuffer oldBuffer = buffer;
+        try {
+            open();
+            if (!readMagic()) {
+                throw new IOException("Compacted sticky event file is invalid: " + file);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (randomAccessFile != oldRandomAccessFile) {
+                randomAccessFile.close();
+            }
+            randomAccessFile = oldRandomAccessFile;
+            channel = oldChannel;
+            buffer = oldBuffer;
+            restoreOldFile(oldFile, true);
+            throw e;
+        }
+        oldRandomAccessFile.close();
+        if (!oldFile.delete()) {
+            logger.log(Level.WARNING, "Could not delete " + oldFile);
+        }
+        records.clear();
+        liveBytes = 0;
+        scanRecords();
+        undecoded.retainAll(records.keySet());
+        resolvedTypes.keySet().retainAll(undecoded);
+        hasUndecoded = !undecoded.isEmpty();
+    }
+
+    private File getOldFile() {
+        return new File(file.getPath() + ".old");
+    }
+
+    /** Moves the old log back in place, which is still mapped and in use. */
+    private void restoreOldFile(File oldFile, boolean replace) {
+        if ((replace && !file.delete()) || !oldFile.renameTo(file)) {
+            logger.log(Level.SEVERE, "Could not move " + oldFile + " back to " + file
+                    + "; it is restored when the file is opened next");
+        }
+    }
+}
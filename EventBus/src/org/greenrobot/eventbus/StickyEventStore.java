@@ -0,0 +1,440 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the most recent sticky event per event type without locking: each type maps to an immutable {@link Entry},
+ * which is only ever swapped atomically (compare-and-set on the map). Every change of a type creates a new entry with
+ * a new version, taken from a counter shared by all types, so readers can cheaply tell whether a type changed since
+ * they last looked. Removal drops the entry; the shared counter keeps versions from going backwards without keeping
+ * anything of the removed type.
+ * <p/>
+ * Sticky events posted with a time to live expire lazily: reading an expired entry removes it. Additionally, bus
+ * activity calls {@link #sweepExpired()}, which checks a few entries at a time, so expired events do not stay in memory
+ * even if nobody reads them. There is no timer thread.
+ * <p/>
+ * With {@link StickyEventPersistence}, each change is written through after it was applied in memory. Persisted events
+ * of the last run are decoded when their type is first requested and then treated like newly posted ones.
+ */
+final class StickyEventStore {
+
+    /** Immutable; the event is never null. */
+    static final class Entry {
+        final Object event;
+        final long version;
+        final boolean expiring;
+        /** Deadline in {@link System#nanoTime()}, only if expiring. */
+        final long expiresAt;
+
+        Entry(Object event, long version, boolean expiring, long expiresAt) {
+            this.event = event;
+            this.version = version;
+            this.expiring = expiring;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiring && now - expiresAt >= 0;
+        }
+    }
+
+    /** Maximum number of entries checked by one {@link #sweepExpired()} call. */
+    private static final int SWEEP_BATCH_SIZE = 16;
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final EventBus eventBus;
+
+    private final ConcurrentMap<Class<?>, Entry> entries = new ConcurrentHashMap<>();
+    /** The last version given to an entry or consumed by a removal. */
+    private final AtomicLong version = new AtomicLong();
+
+    //父类/接口（包括自己） 到 所有已有stick event的子类型，register时不用遍历所有的sticky event；可能短暂多出已移除的类型
+    //事件继承可以按类型开关，所以总是维护；变空的集合会被移除，不让已移除的类型（和它的ClassLoader）无法回收
+    //修改时锁住这个map，读取不加锁
+    private final ConcurrentMap<Class<?>, Set<Class<?>>> stickyTypesBySupertype = new ConcurrentHashMap<>();
+
+    //带key的sticky event，每个类型一个KeyedStickyEvents，创建后不再移除
+    private final ConcurrentMap<Class<?>, KeyedStickyEvents> keyedEvents = new ConcurrentHashMap<>();
+    private final Map<Class<?>, KeyedStickyEvents.Limits> keyedLimits;
+
+    //同stickyTypesBySupertype，不过是带key的sticky event的类型；类型不会被移除
+    private final ConcurrentMap<Class<?>, Set<Class<?>>> keyedTypesBySupertype = new ConcurrentHashMap<>();
+
+    //还没过期的、带过期时间的sticky event数量，为0时post不用清理
+    private final AtomicInteger expiringCount = new AtomicInteger();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private volatile long nextSweepAt;
+    /** Continues where the last sweep stopped; guarded by sweeping. */
+    private Iterator<Map.Entry<Class<?>, Entry>> sweepIterator;
+
+    /** Null if sticky events are not persisted. */
+    private final StickyEventPersistence persistence;
+
+    StickyEventStore(EventBus eventBus, Map<Class<?>, KeyedStickyEvents.Limits> keyedLimits,
+                     StickyEventPersistence persistence) {
+        this.eventBus = eventBus;
+        this.keyedLimits = keyedLimits;
+        this.persistence = persistence;
+        // System.nanoTime() may be negative, so don't start with 0
+        nextSweepAt = System.nanoTime();
+    }
+
+    /** Removes the entry of the given type first if it is expired. */
+    private Entry getLiveEntry(Class<?> eventType) {
+        while (true) {
+            Entry entry = entries.get(eventType);
+            // decode() only locks if this type has an undecoded event
+            if (entry == null && persistence != null && persistence.hasUndecoded()) {
+                entry = loadPersisted(eventType);
+            }
+            if (entry == null || !entry.expiring || !entry.isExpired(System.nanoTime())) {
+                return entry;
+            }
+            // If this fails, the entry was changed concurrently, so look again
+            removeEntry(eventType, entry);
+        }
+    }
+
+    private Entry loadPersisted(Class<?> eventType) {
+        StickyEventPersistence.PersistedEvent persisted = persistence.decode(eventType);
+        if (persisted != null) {
+            boolean expiring = persisted.expiresAtMillis != 0;
+            long expiresAt = 0;
+            if (expiring) {
+                long timeToLiveMillis = persisted.expiresAtMillis - System.currentTimeMillis();
+                expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis);
+            }
+            Entry newEntry = new Entry(persisted.event, version.incrementAndGet(), expiring, expiresAt);
+            // Fails if the type was posted in the meantime, which wins
+            if (entries.putIfAbsent(eventType, newEntry) == null) {
+                updateExpiringCount(null, newEntry);
+                addToIndex(eventType);
+            }
+        }
+        return entries.get(eventType);
+    }
+
+    /**
+     * Only with persistence: decodes the persisted events of the last run that a subscriber to the given type would
+     * get, so they are in the index.
+     */
+    void loadPersistedAssignableTo(Class<?> eventType) {
+        if (persistence != null && persistence.hasUndecoded()) {
+            for (Class<?> persistedType : persistence.getUndecodedTypesAssignableTo(eventType)) {
+                getLiveEntry(persistedType);
+            }
+        }
+    }
+
+    private void persist(Class<?> eventType) {
+        if (persistence != null) {
+            // Writes the current state, so the last write wins even if concurrent changes are persisted out of order
+            synchronized (persistence) {
+                Entry entry = entries.get(eventType);
+                long expiresAtMillis = 0;
+                if (entry != null && entry.expiring) {
+                    long timeToLiveNanos = entry.expiresAt - System.nanoTime();
+                    expiresAtMillis = System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(timeToLiveNanos);
+                }
+                persistence.write(eventType, entry != null ? entry.event : null, expiresAtMillis);
+            }
+        }
+    }
+
+    Object get(Class<?> eventType) {
+        Entry entry = getLiveEntry(eventType);
+        return entry != null ? entry.event : null;
+    }
+
+    /**
+     * Without a sticky event of the given type, the current version of the store: higher than that of a removed event,
+     * and 0 if there never was any sticky event.
+     */
+    long getVersion(Class<?> eventType) {
+        Entry entry = getLiveEntry(eventType);
+        return entry != null ? entry.version : version.get();
+    }
+
+    /**
+     * @param timeToLiveNanos the event expires after this time; 0 for events that do not expire
+     * @return the previous (not expired) sticky event of the event's type, or null
+     */
+    Object put(Object event, long timeToLiveNanos) {
+        Class<?> eventType = event.getClass();
+        boolean expiring = timeToLiveNanos > 0;
+        long expiresAt = expiring ? System.nanoTime() + timeToLiveNanos : 0;
+        while (true) {
+            Entry entry = entries.get(eventType);
+            if (entry == null) {
+                Entry newEntry = new Entry(event, version.incrementAndGet(), expiring, expiresAt);
+                if (entries.putIfAbsent(eventType, newEntry) == null) {
+                    updateExpiringCount(null, newEntry);
+                    addToIndex(eventType);
+                    persist(eventType);
+                    return null;
+                }
+            } else {
+                Entry newEntry = new Entry(event, version.incrementAndGet(), expiring, expiresAt);
+                if (entries.replace(eventType, entry, newEntry)) {
+                    updateExpiringCount(entry, newEntry);
+                    persist(eventType);
+                    // An expired entry not removed yet is still in the index
+                    return entry.expiring && entry.isExpired(System.nanoTime()) ? null : entry.event;
+                }
+            }
+        }
+    }
+
+    /**
+     * Atomically replaces the sticky event of newEvent's type if the current one equals expectedEvent. The new event
+     * keeps the expiration deadline of the replaced one.
+     */
+    boolean replace(Object expectedEvent, Object newEvent) {
+        Class<?> eventType = newEvent.getClass();
+        while (true) {
+            Entry entry = getLiveEntry(eventType);
+            if (entry == null || !expectedEvent.equals(entry.event)) {
+                return false;
+            }
+            // 沿用原事件的过期时间，替换不应让带TTL的事件变成永久事件
+            Entry newEntry = new Entry(newEvent, version.incrementAndGet(), entry.expiring, entry.expiresAt);
+            if (entries.replace(eventType, entry, newEntry)) {
+                updateExpiringCount(entry, newEntry);
+                persist(eventType);
+                return true;
+            }
+        }
+    }
+
+    /** @return the removed sticky event, or null */
+    Object remove(Class<?> eventType) {
+        while (true) {
+            Entry entry = getLiveEntry(eventType);
+            if (entry == null) {
+                return null;
+            }
+            if (removeEntry(eventType, entry)) {
+                return entry.event;
+            }
+        }
+    }
+
+    /** Atomically removes the sticky event of the given event's type if it equals the given event. */
+    boolean remove(Object event) {
+        Class<?> eventType = event.getClass();
+        while (true) {
+            Entry entry = getLiveEntry(eventType);
+            if (entry == null || !event.equals(entry.event)) {
+                return false;
+            }
+            if (removeEntry(eventType, entry)) {
+                return true;
+            }
+        }
+    }
+
+    void clear() {
+        for (Class<?> eventType : entries.keySet()) {
+            remove(eventType);
+        }
+        for (KeyedStickyEvents events : keyedEvents.values()) {
+            events.clear();
+        }
+        if (persistence != null) {
+            persistence.clear();
+        }
+    }
+
+    void closePersistence() {
+        if (persistence != null) {
+            persistence.close();
+        }
+    }
+
+    private boolean removeEntry(Class<?> eventType, Entry entry) {
+        // Before removing, so the version of the type is higher as soon as the entry is gone
+        version.incrementAndGet();
+        if (!entries.remove(eventType, entry)) {
+            return false;
+        }
+        updateExpiringCount(entry, null);
+        persist(eventType);
+        synchronized (stickyTypesBySupertype) {
+            for (Class<?> supertype : eventBus.lookupAllEventTypes(eventType)) {
+                Set<Class<?>> stickyTypes = stickyTypesBySupertype.get(supertype);
+                if (stickyTypes != null) {
+                    stickyTypes.remove(eventType);
+                    if (stickyTypes.isEmpty()) {
+                        stickyTypesBySupertype.remove(supertype);
+                    }
+                }
+            }
+        }
+        // A concurrent put may have added it back before we removed it from the index
+        if (get(eventType) != null) {
+            addToIndex(eventType);
+        }
+        return true;
+    }
+
+    private void updateExpiringCount(Entry oldEntry, Entry newEntry) {
+        int delta = (newEntry != null && newEntry.expiring ? 1 : 0) - (oldEntry != null && oldEntry.expiring ? 1 : 0);
+        if (delta != 0) {
+            expiringCount.addAndGet(delta);
+        }
+    }
+
+    boolean hasExpiringEvents() {
+        return expiringCount.get() != 0;
+    }
+
+    /**
+     * Removes expired sticky events, checking at most {@link #SWEEP_BATCH_SIZE} entries and doing nothing if the last
+     * sweep was less than {@link #SWEEP_INTERVAL_NANOS} ago or another thread is sweeping. Cheap enough to be called
+     * on bus activity like posting.
+     */
+    void sweepExpired() {
+        long now = System.nanoTime();
+        if (now - nextSweepAt < 0 || !sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            nextSweepAt = now + SWEEP_INTERVAL_NANOS;
+            if (sweepIterator == null || !sweepIterator.hasNext()) {
+                sweepIterator = entries.entrySet().iterator();
+            }
+            for (int i = 0; i < SWEEP_BATCH_SIZE && sweepIterator.hasNext(); i++) {
+                Map.Entry<Class<?>, Entry> mapEntry = sweepIterator.next();
+                Entry entry = mapEntry.getValue();
+                if (entry.isExpired(now)) {
+                    removeEntry(mapEntry.getKey(), entry);
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private void addToIndex(Class<?> eventType) {
+        addToIndex(stickyTypesBySupertype, eventType);
+    }
+
+    private void addToIndex(ConcurrentMap<Class<?>, Set<Class<?>>> typesBySupertype, Class<?> eventType) {
+        // Locked, so a set is not dropped as empty while a type is added to it
+        synchronized (typesBySupertype) {
+            for (Class<?> supertype : eventBus.lookupAllEventTypes(eventType)) {
+                Set<Class<?>> stickyTypes = typesBySupertype.get(supertype);
+                if (stickyTypes == null) {
+                    stickyTypes = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+                    typesBySupertype.put(supertype, stickyTypes);
+                }
+                stickyTypes.add(eventType);
+            }
+        }
+    }
+
+    /**
+     * The types of the sticky events assignable to the given type (including itself), or null. May briefly include
+     * types whose sticky event was just removed, so callers must check for null events.
+     */
+    Set<Class<?>> getStickyTypesAssignableTo(Class<?> eventType) {
+        return stickyTypesBySupertype.get(eventType);
+    }
+
+    /** Null if there never was a keyed sticky event of the given type. */
+    KeyedStickyEvents getKeyed(Class<?> eventType) {
+        return keyedEvents.get(eventType);
+    }
+
+    KeyedStickyEvents getOrCreateKeyed(Class<?> eventType) {
+        KeyedStickyEvents events = keyedEvents.get(eventType);
+        if (events == null) {
+            events = new KeyedStickyEvents(keyedLimits != null ? keyedLimits.get(eventType) : null);
+            KeyedStickyEvents existing = keyedEvents.putIfAbsent(eventType, events);
+            if (existing != null) {
+                events = existing;
+            } else {
+                addToIndex(keyedTypesBySupertype, eventType);
+            }
+        }
+        return events;
+    }
+
+    /** The types of the keyed sticky events assignable to the given type (including itself), or null. */
+    Set<Class<?>> getKeyedTypesAssignableTo(Class<?> eventType) {
+        return keyedTypesBySupertype.get(eventType);
+    }
+
+    long getKeyedWeight() {
+        long weight = 0;
+        for (KeyedStickyEvents events : keyedEvents.values()) {
+            weight += events.getWeight();
+        }
+        return weight;
+    }
+
+    /**
+     * The sticky events of the given types as they all were at one point in time. Reads all entries until two passes
+     * in a row see the same entries; as each change creates a new entry, nothing changed in between. Does not lock, so
+     * writers are never blocked (under constant writes to the same types, this may take a few passes).
+     */
+    Map<Class<?>, Object> snapshot(Class<?>... eventTypes) {
+        if (persistence != null && persistence.hasUndecoded()) {
+            for (Class<?> eventType : eventTypes) {
+                getLiveEntry(eventType);
+            }
+        }
+        Entry[] previous = new Entry[eventTypes.length];
+        Entry[] current = new Entry[eventTypes.length];
+        readEntries(eventTypes, previous);
+        while (true) {
+            readEntries(eventTypes, current);
+            if (Arrays.equals(previous, current)) {
+                break;
+            }
+            Entry[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        Map<Class<?>, Object> snapshot = new HashMap<>();
+        long now = System.nanoTime();
+        for (int i = 0; i < eventTypes.length; i++) {
+            if (current[i] != null && !current[i].isExpired(now)) {
+                snapshot.put(eventTypes[i], current[i].event);
+            }
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    private void readEntries(Class<?>[] eventTypes, Entry[] target) {
+        for (int i = 0; i < eventTypes.length; i++) {
+            target[i] = entries.get(eventTypes[i]);
+        }
+    }
+}
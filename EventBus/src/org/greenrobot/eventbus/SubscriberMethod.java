@@ -15,12 +15,18 @@
  */
 package org.greenrobot.eventbus;
 
+import org.greenrobot.eventbus.meta.SubscriberMethodInvoker;
+
 import java.lang.reflect.Method;
 
 /** Used internally by EventBus and generated subscriber indexes. */
 //ok
 public class SubscriberMethod {
-    final Method method;//反射里边的
+    final Method method;//反射里边的，使用invoker时为null
+    final SubscriberMethodInvoker invoker;//不使用反射调用
+    /** Declaring class and name of the method, used to detect overridden methods; null for EventConsumers. */
+    final Class<?> declaringClass;
+    final String methodName;
     final ThreadMode threadMode;
     final Class<?> eventType;
     final int priority;
@@ -30,6 +36,31 @@ public class SubscriberMethod {
 
     public SubscriberMethod(Method method, Class<?> eventType, ThreadMode threadMode, int priority, boolean sticky) {
         this.method = method;
+        this.invoker = null;
+        this.declaringClass = method.getDeclaringClass();
+        this.methodName = method.getName();
+        this.threadMode = threadMode;
+        this.eventType = eventType;
+        this.priority = priority;
+        this.sticky = sticky;
+    }
+
+    /** For subscriptions called without reflection, e.g. {@link EventConsumer}s. */
+    public SubscriberMethod(SubscriberMethodInvoker invoker, Class<?> eventType, ThreadMode threadMode, int priority,
+                            boolean sticky) {
+        this(null, null, invoker, eventType, threadMode, priority, sticky);
+    }
+
+    /**
+     * For subscriber methods called without reflection, e.g. by generated indexes for subscribers not accessible to
+     * EventBus. Equal to the SubscriberMethod of the same method found by reflection.
+     */
+    public SubscriberMethod(Class<?> declaringClass, String methodName, SubscriberMethodInvoker invoker,
+                            Class<?> eventType, ThreadMode threadMode, int priority, boolean sticky) {
+        this.method = null;
+        this.invoker = invoker;
+        this.declaringClass = declaringClass;
+        this.methodName = methodName;
         this.threadMode = threadMode;
         this.eventType = eventType;
         this.priority = priority;
@@ -51,19 +82,30 @@ public class SubscriberMethod {
         }
     }
 
-    private synchronized void checkMethodString() {
+    private void checkMethodString() {
         if (methodString == null) {
             // Method.toString has more overhead, just take relevant parts of the method
             StringBuilder builder = new StringBuilder(64);
-            builder.append(method.getDeclaringClass().getName());
-            builder.append('#').append(method.getName());
+            if (declaringClass != null) {
+                builder.append(declaringClass.getName());
+                builder.append('#').append(methodName);
+            } else {
+                builder.append(invoker.getClass().getName());
+                builder.append("#invoke");
+            }
             builder.append('(').append(eventType.getName());
+            // Racing threads compute equal Strings, so no lock is needed; Strings are safely published anyway
             methodString = builder.toString();
         }
     }
 
     @Override
     public int hashCode() {
-        return method.hashCode();
+        if (declaringClass != null) {
+            // Same as Method.hashCode()
+            return declaringClass.getName().hashCode() ^ methodName.hashCode();
+        }
+        checkMethodString();
+        return methodString.hashCode();
     }
 }
\ No newline at end of file
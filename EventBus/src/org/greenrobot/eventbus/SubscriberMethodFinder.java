@@ -15,16 +15,19 @@
  */
 package org.greenrobot.eventbus;
 
+import org.greenrobot.eventbus.meta.EnumerableSubscriberInfoIndex;
+import org.greenrobot.eventbus.meta.FlattenedSubscriberInfo;
 import org.greenrobot.eventbus.meta.SubscriberInfo;
 import org.greenrobot.eventbus.meta.SubscriberInfoIndex;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 class SubscriberMethodFinder {
     //region 参数
@@ -38,20 +41,26 @@ class SubscriberMethodFinder {
 
     private static final int MODIFIERS_IGNORE = Modifier.ABSTRACT | Modifier.STATIC | BRIDGE | SYNTHETIC;
     //subscriberClass 方法
-    private static final Map<Class<?>, List<SubscriberMethod>> METHOD_CACHE = new ConcurrentHashMap<>();
-    private static final int POOL_SIZE = 4;
-    //干哈的？？
-    private static final FindState[] FIND_STATE_POOL = new FindState[POOL_SIZE];
+    private static final ClassCache<List<SubscriberMethod>> METHOD_CACHE = ClassCache.create();
+    /** Each thread reuses its own FindState, so concurrent registrations neither lock nor allocate. */
+    private static final ThreadLocal<FindState> FIND_STATE = new ThreadLocal<FindState>() {
+        @Override
+        protected FindState initialValue() {
+            return new FindState();
+        }
+    };
     private final boolean strictMethodVerification;//严格方法检查，默认false，public, non-static, and non-abstract，一个参数
     private final boolean ignoreGeneratedIndex;//忽略生成的index，默认false
-    //注解处理器生成的SubscriberInfoIndex
-    private final List<SubscriberInfoIndex> subscriberInfoIndexes;
+    //注解处理器生成的SubscriberInfoIndex，合并为一个查找表；没有index时为null
+    private final MergedSubscriberInfoIndex subscriberInfoIndex;
     //endregion
 
     //region ok 构造函数
     SubscriberMethodFinder(List<SubscriberInfoIndex> subscriberInfoIndexes, boolean strictMethodVerification,
                            boolean ignoreGeneratedIndex) {
-        this.subscriberInfoIndexes = subscriberInfoIndexes;//注解处理器生成的SubscriberInfoIndex
+        //注解处理器生成的SubscriberInfoIndex
+        this.subscriberInfoIndex = subscriberInfoIndexes != null && !subscriberInfoIndexes.isEmpty() ?
+                new MergedSubscriberInfoIndex(subscriberInfoIndexes) : null;
         this.strictMethodVerification = strictMethodVerification;//false
         this.ignoreGeneratedIndex = ignoreGeneratedIndex;//false
     }
@@ -90,31 +99,45 @@ class SubscriberMethodFinder {
     //region findUsingInfo
     //从注解器生成的MyEventBusIndex类中获得订阅类的订阅方法信息 // 使用apt提前解析的订阅者信息
     private List<SubscriberMethod> findUsingInfo(Class<?> subscriberClass) {
+        SubscriberInfo subscriberInfo = subscriberInfoIndex != null ?
+                subscriberInfoIndex.getSubscriberInfo(subscriberClass) : null;
+        if (subscriberInfo instanceof FlattenedSubscriberInfo) {
+            // 注解处理器已经合并了父类的订阅方法并去掉了被覆盖的，不需要FindState
+            return Arrays.asList(subscriberInfo.getSubscriberMethods());
+        }
         // FindState 涉及到 享元设计模式
         FindState findState = prepareFindState();
-        findState.initForSubscriber(subscriberClass);
-        while (findState.clazz != null) {
-            //遍历subscriberInfoIndexes里的 SubscriberInfoIndex，
-            //如果其getSubscriberInfo(findState.clazz)
-            //不为null则返回得到的SubscriberInfo
-            findState.subscriberInfo = getSubscriberInfo(findState);
-            if (findState.subscriberInfo != null) {
-                //得到所有的SubscriberMethod
-                SubscriberMethod[] array = findState.subscriberInfo.getSubscriberMethods();
-                for (SubscriberMethod subscriberMethod : array) {
-                    //检查
-                    if (findState.checkAdd(subscriberMethod.method, subscriberMethod.eventType)) {
-                        //添加
-                        findState.subscriberMethods.add(subscriberMethod);
+        try {
+            findState.initForSubscriber(subscriberClass);
+            while (findState.clazz != null) {
+                //从合并后的SubscriberInfoIndex查找表里，
+                //如果其getSubscriberInfo(findState.clazz)
+                //不为null则返回得到的SubscriberInfo
+                findState.subscriberInfo = getSubscriberInfo(findState);
+                if (findState.subscriberInfo != null) {
+                    //得到所有的SubscriberMethod
+                    SubscriberMethod[] array = findState.subscriberInfo.getSubscriberMethods();
+                    for (SubscriberMethod subscriberMethod : array) {
+                        //检查
+                        if (findState.checkAdd(subscriberMethod)) {
+                            //添加
+                            findState.subscriberMethods.add(subscriberMethod);
+                        }
                     }
+                    if (findState.subscriberInfo instanceof FlattenedSubscriberInfo) {
+                        // Already includes the methods of all superclasses
+                        break;
+                    }
+                } else {
+                    findUsingReflectionInSingleClass(findState);
                 }
-            } else {
-                findUsingReflectionInSingleClass(findState);
+                findState.moveToSuperclass();
             }
-            findState.moveToSuperclass();
+            return getMethods(findState);
+        } finally {
+            // 释放 findState
+            findState.recycle();
         }
-        // 释放 findState 享元模式
-        return getMethodsAndRelease(findState);
     }
     //endregion
 
@@ -127,60 +150,50 @@ class SubscriberMethodFinder {
                 return superclassInfo;
             }
         }
-        //遍历subscriberInfoIndexes里的 SubscriberInfoIndex，如果其getSubscriberInfo(findState.clazz)
-        //不为null则返回得到的SubscriberInfo
-        if (subscriberInfoIndexes != null) {
-            for (SubscriberInfoIndex index : subscriberInfoIndexes) {
-                SubscriberInfo info = index.getSubscriberInfo(findState.clazz);
-                if (info != null) {
-                    return info;
-                }
-            }
+        //从合并后的查找表里取findState.clazz的SubscriberInfo，没有则返回null
+        return subscriberInfoIndex != null ? subscriberInfoIndex.getSubscriberInfo(findState.clazz) : null;
+    }
+
+    /** Subscriber classes of all indexes able to list them (see {@link EnumerableSubscriberInfoIndex}). */
+    List<Class<?>> getIndexedSubscriberClasses() {
+        if (subscriberInfoIndex == null || ignoreGeneratedIndex) {
+            return Collections.emptyList();
         }
-        return null;
+        return Arrays.asList(subscriberInfoIndex.getSubscriberClasses());
     }
 
-    //region ok getMethodsAndRelease prepareFindState clearCaches
+    //region ok getMethods prepareFindState clearCaches
     //享元模式本质就是将大量的相似的对象的公共的不会变化的部分抽象出来，作为静态变量，作为全局唯一的对象，让所有的对象共同使用这一组对象，达到节约内存的目的。
-    private List<SubscriberMethod> getMethodsAndRelease(FindState findState) {
-        List<SubscriberMethod> subscriberMethods = new ArrayList<>(findState.subscriberMethods);
-        findState.recycle();
-        synchronized (FIND_STATE_POOL) {
-            for (int i = 0; i < POOL_SIZE; i++) {
-                if (FIND_STATE_POOL[i] == null) {
-                    FIND_STATE_POOL[i] = findState;
-                    break;
-                }
-            }
-        }
-        return subscriberMethods;
+    private List<SubscriberMethod> getMethods(FindState findState) {
+        return new ArrayList<>(findState.subscriberMethods);
     }
 
-    //从FindState[]数组缓存里取一个FindState
+    //从ThreadLocal里取当前线程的FindState
     private FindState prepareFindState() {
-        synchronized (FIND_STATE_POOL) {
-            for (int i = 0; i < POOL_SIZE; i++) {
-                FindState state = FIND_STATE_POOL[i];
-                if (state != null) {
-                    FIND_STATE_POOL[i] = null;
-                    return state;
-                }
-            }
+        FindState state = FIND_STATE.get();
+        if (state.inUse) {
+            // Re-entrant lookup (e.g. a custom index registering subscribers), don't mess with the outer state
+            return new FindState();
         }
-        return new FindState();
+        state.inUse = true;
+        return state;
     }
     //endregion
 
     // 利用反射来获取订阅类中所有订阅方法信息
     private List<SubscriberMethod> findUsingReflection(Class<?> subscriberClass) {
         FindState findState = prepareFindState();
-        findState.initForSubscriber(subscriberClass);
-        while (findState.clazz != null) {
-            // 寻找某个类中的所有事件响应方法
-            findUsingReflectionInSingleClass(findState);
-            findState.moveToSuperclass();//继续寻找当前类父类中注册的事件响应方法
+        try {
+            findState.initForSubscriber(subscriberClass);
+            while (findState.clazz != null) {
+                // 寻找某个类中的所有事件响应方法
+                findUsingReflectionInSingleClass(findState);
+                findState.moveToSuperclass();//继续寻找当前类父类中注册的事件响应方法
+            }
+            return getMethods(findState);
+        } finally {
+            findState.recycle();
         }
-        return getMethodsAndRelease(findState);
     }
 
     //寻找某个类中的所有事件响应方法
@@ -219,13 +232,15 @@ class SubscriberMethodFinder {
                     if (subscribeAnnotation != null) {
                         // 获取事件的 Class ，也就是方法参数的 Class
                         Class<?> eventType = parameterTypes[0];
+                        // 获取 ThreadMode
+                        ThreadMode threadMode = subscribeAnnotation.threadMode();
+                        // 解析方法注解所有的属性
+                        SubscriberMethod subscriberMethod = new SubscriberMethod(method, eventType, threadMode,
+                                subscribeAnnotation.priority(), subscribeAnnotation.sticky());
                         // 检测添加
-                        if (findState.checkAdd(method, eventType)) {
-                            // 获取 ThreadMode
-                            ThreadMode threadMode = subscribeAnnotation.threadMode();
-                            // 往集合里面添加 SubscriberMethod ，解析方法注解所有的属性
-                            findState.subscriberMethods.add(new SubscriberMethod(method, eventType, threadMode,
-                                    subscribeAnnotation.priority(), subscribeAnnotation.sticky()));
+                        if (findState.checkAdd(subscriberMethod)) {
+                            // 往集合里面添加 SubscriberMethod
+                            findState.subscriberMethods.add(subscriberMethod);
                         }
                     }
                 } else if (strictMethodVerification && method.isAnnotationPresent(Subscribe.class)) {
@@ -249,8 +264,10 @@ class SubscriberMethodFinder {
         //eventtype对应的方法
         final Map<Class, Object> anyMethodByEventType = new HashMap<>();
         //methdkey对应的订阅者
-        final Map<String, Class> subscriberClassByMethodKey = new HashMap<>();
-        final StringBuilder methodKeyBuilder = new StringBuilder(128);
+        final Map<MethodKey, Class> subscriberClassByMethodKey = new HashMap<>();
+        /** Reused for lookups; only keys actually stored in the map are allocated. */
+        final MethodKey methodKeyProbe = new MethodKey();
+        boolean inUse;
 
         //当前订阅者的类
         Class<?> subscriberClass;
@@ -272,7 +289,8 @@ class SubscriberMethodFinder {
             subscriberMethods.clear();
             anyMethodByEventType.clear();
             subscriberClassByMethodKey.clear();
-            methodKeyBuilder.setLength(0);
+            methodKeyProbe.set(null, null);
+            inUse = false;
             subscriberClass = null;
             clazz = null;
             skipSuperClasses = false;
@@ -284,12 +302,13 @@ class SubscriberMethodFinder {
         //处理两种情况
         //一.假如注册了3个方法，方法名不一样afun1 afun2 afun3,都添加
         //二.子类覆盖了父类的订阅方法，只保留子类的
-        boolean checkAdd(Method method, Class<?> eventType) {
+        boolean checkAdd(SubscriberMethod subscriberMethod) {
+            Class<?> eventType = subscriberMethod.eventType;
             // 2 level check: 1st level with event type only (fast), 2nd level with complete signature when required.
             // Usually a subscriber doesn't have methods listening to the same event type.
 
             // 1.检查eventType是否已经注册过对应的方法（一般都没有）
-            Object existing = anyMethodByEventType.put(eventType, method);
+            Object existing = anyMethodByEventType.put(eventType, subscriberMethod);
             if (existing == null) {
 //                第一种是判断当前类中是否已经有这个EventType和对应的订阅方法，一般一个类不会有对同
 //                一个EventType写多个方法，会直接返回true，进行保存。
@@ -303,15 +322,15 @@ class SubscriberMethodFinder {
                 //a.1 假如注册了3个方法，方法名不一样afun1 afun2 afun3
                 //a.7 afun3 的时候existing 对象不是method了
                 //b.1 子类bfun_child，父类也注册了bfun_parent
-                if (existing instanceof Method) {
+                if (existing instanceof SubscriberMethod) {
                     //这里步骤的意义在于往subscriberClassByMethodKey map里加入第一个方法
                     //a.2 existing是以前的方法afun1
                     //b.2 传入以前的方法bfun_child
-                    if (!checkAddWithMethodSignature((Method) existing, eventType)) {
+                    if (!checkAddWithMethodSignature((SubscriberMethod) existing)) {
                         // Paranoia check
                         throw new IllegalStateException();
                     }
-                    // Put any non-Method object to "consume" the existing Method
+                    // Put any non-SubscriberMethod object to "consume" the existing one
                     //a.4 anyMethodByEventType eventType设置了个不是Method的对象
                     //b.4 anyMethodByEventType eventType设置了个不是Method的对象
                     anyMethodByEventType.put(eventType, this);
@@ -319,22 +338,18 @@ class SubscriberMethodFinder {
                 //a.5 传入现在的方法afun2
                 //a.8 传入现在的方法afun3
                 //b.5 传入现在的方法bfun_parent
-                return checkAddWithMethodSignature(method, eventType);
+                return checkAddWithMethodSignature(subscriberMethod);
 
             }
         }
 
-        private boolean checkAddWithMethodSignature(Method method, Class<?> eventType) {
+        private boolean checkAddWithMethodSignature(SubscriberMethod subscriberMethod) {
             // 以[方法名>eventType]为Key
-            methodKeyBuilder.setLength(0);
-            methodKeyBuilder.append(method.getName());
-            methodKeyBuilder.append('>').append(eventType.getName());
-
-            String methodKey = methodKeyBuilder.toString();
+            MethodKey methodKey = methodKeyProbe.set(subscriberMethod.methodName, subscriberMethod.eventType);
 
             // 拿到新的订阅方法所属类
-            Class<?> methodClass = method.getDeclaringClass();//定义的类，可能是父类
-            Class<?> methodClassOld = subscriberClassByMethodKey.put(methodKey, methodClass);
+            Class<?> methodClass = subscriberMethod.declaringClass;//定义的类，可能是父类
+            Class<?> methodClassOld = subscriberClassByMethodKey.get(methodKey);
 
             //a.3 传入以前的方法afun1,methodClassOld为null,并保存到了subscriberClassByMethodKey afun1->key，返回true
             //b.3 传入以前的方法bfun_child,methodClassOld为null,并保存到了subscriberClassByMethodKey bfun_child->key，返回true
@@ -350,8 +365,13 @@ class SubscriberMethodFinder {
 //            isAssignableFrom()方法是判断是否为某个类的父类，instanceof关键字是判断是否某个类的子类。
             //b.7 传入现在的方法bfun_parent，methodClassOld为子类，methodClass为父类
             //isAssignableFrom判断是否为某个类的父类
-            if (methodClassOld == null || methodClassOld.isAssignableFrom(methodClass)) {
-                // Only add if not already found in a sub class
+            if (methodClassOld == null) {
+                subscriberClassByMethodKey.put(new MethodKey().set(subscriberMethod.methodName,
+                        subscriberMethod.eventType), methodClass);
+                return true;
+            } else if (methodClassOld.isAssignableFrom(methodClass)) {
+                // Only add if not already found in a sub class; put keeps the existing key object
+                subscriberClassByMethodKey.put(methodKey, methodClass);
                 return true;
             } else {
 //                这次根据 方法名>参数名进行完整校验,因为同一个类中同名同参的函数是不存在的,而同名不同参的在前一步已经被过滤了，
@@ -359,13 +379,39 @@ class SubscriberMethodFinder {
 //                但如果子类重写父类的方法的话,就会出现相同的methodKey。这时EventBus会做一次验证,
 //                并保留子类的订阅信息。由于扫描是由子类向父类的顺序，故此时应当保留methodClassOld而忽略methodClass。如果代码上的注释 Revert the put
                 //b.8 传入现在的方法bfun_parent，methodClassOld为子类，methodClass为父类，subscriberClassByMethodKey保存子类的，返回false，不保存
-                // Revert the put, old class is further down the class hierarchy
-                subscriberClassByMethodKey.put(methodKey, methodClassOld);
+                // Keep the old class, it is further down the class hierarchy
                 return false;
             }
         }
         //endregion
 
+        /** Method name and event type, replaces the former "name>eventType" String key. */
+        static final class MethodKey {
+            String methodName;
+            Class<?> eventType;
+
+            MethodKey set(String methodName, Class<?> eventType) {
+                this.methodName = methodName;
+                this.eventType = eventType;
+                return this;
+            }
+
+            @Override
+            public boolean equals(Object other) {
+                if (other instanceof MethodKey) {
+                    MethodKey otherKey = (MethodKey) other;
+                    return eventType == otherKey.eventType && methodName.equals(otherKey.methodName);
+                } else {
+                    return false;
+                }
+            }
+
+            @Override
+            public int hashCode() {
+                return 31 * methodName.hashCode() + eventType.hashCode();
+            }
+        }
+
         //region moveToSuperclass
         void moveToSuperclass() {
             if (skipSuperClasses) {
@@ -14,27 +14,59 @@
  * limitations under the License.
  */
 package org.greenrobot.eventbus;
+
+import java.lang.ref.Reference;
+
 //ok
 final class Subscription {
-    final Object subscriber;//实例
+    private Object subscriber;//实例，弱引用注册时为null；unregister时清空
+    private Reference<Object> subscriberReference;//弱引用注册时的实例
     final SubscriberMethod subscriberMethod;
     /**
      * Becomes false as soon as {@link EventBus#unregister(Object)} is called, which is checked by queued event delivery
      * {@link EventBus#invokeSubscriber(PendingPost)} to prevent race conditions.
      */
     volatile boolean active;
+    /** Only with {@link EventBusBuilder#collectMetrics(boolean)}; set before the subscription is published. */
+    EventBusMetrics.SubscriberMethodCounters metrics;
 
     Subscription(Object subscriber, SubscriberMethod subscriberMethod) {
         this.subscriber = subscriber;
+        this.subscriberReference = null;
+        this.subscriberMethod = subscriberMethod;
+        active = true;
+    }
+
+    /** For subscribers registered with {@link EventBus#registerWeakly(Object)}. */
+    Subscription(Reference<Object> subscriberReference, SubscriberMethod subscriberMethod) {
+        this.subscriber = null;
+        this.subscriberReference = subscriberReference;
         this.subscriberMethod = subscriberMethod;
         active = true;
     }
 
+    /**
+     * Deactivates the subscription and releases the subscriber, so it is not kept reachable by inactive subscriptions
+     * remaining in the array of a {@link SubscriptionList} until it is compacted.
+     */
+    void deactivate() {
+        subscriber = null;
+        subscriberReference = null;
+        // Volatile write after clearing, so threads seeing an active subscription may still see the subscriber
+        active = false;
+    }
+
+    /** Null if the subscriber was unregistered, or registered weakly and has been garbage collected. */
+    Object getSubscriber() {
+        Reference<Object> reference = subscriberReference;
+        return reference == null ? subscriber : reference.get();
+    }
+
     @Override
     public boolean equals(Object other) {
         if (other instanceof Subscription) {
             Subscription otherSubscription = (Subscription) other;
-            return subscriber == otherSubscription.subscriber
+            return getSubscriber() == otherSubscription.getSubscriber()
                     && subscriberMethod.equals(otherSubscription.subscriberMethod);
         } else {
             return false;
@@ -43,6 +75,7 @@ final class Subscription {
 
     @Override
     public int hashCode() {
-        return subscriber.hashCode() + subscriberMethod.methodString.hashCode();
+        Object subscriber = getSubscriber();
+        return (subscriber != null ? subscriber.hashCode() : 0) + subscriberMethod.hashCode();
     }
-}
\ No newline at end of file
+}
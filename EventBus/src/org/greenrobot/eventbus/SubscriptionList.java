@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import java.util.List;
+
+/**
+ * Subscriptions of one event type ordered by descending priority. Like a copy on write list, readers get an immutable
+ * snapshot without locking. Unlike it, removing only marks the subscription inactive (which posting checks anyway):
+ * the array is compacted once there are more inactive than active subscriptions, so removal is O(1) amortized.
+ * <p/>
+ * Modifications must be synchronized by the caller (the EventBus).
+ */
+final class SubscriptionList {
+    private static final Subscription[] EMPTY = new Subscription[0];
+
+    /** May contain inactive subscriptions, which must be skipped. */
+    private volatile Subscription[] subscriptions = EMPTY;
+    private volatile int activeCount;
+
+    Subscription[] getSnapshot() {
+        return subscriptions;
+    }
+
+    boolean isEmpty() {
+        return activeCount == 0;
+    }
+
+    /** Adds the subscription after all subscriptions of equal or higher priority. */
+    void add(Subscription newSubscription) {
+        Subscription[] current = subscriptions;
+        Subscription[] updated = new Subscription[activeCount + 1];
+        int priority = newSubscription.subscriberMethod.priority;
+        int count = 0;
+        boolean added = false;
+        for (Subscription subscription : current) {
+            if (!subscription.active) {
+                continue;
+            }
+            if (!added && priority > subscription.subscriberMethod.priority) {
+                updated[count++] = newSubscription;
+                added = true;
+            }
+            updated[count++] = subscription;
+        }
+        if (!added) {
+            updated[count] = newSubscription;
+        }
+        publish(updated);
+    }
+
+    /**
+     * Merges new subscriptions, which must be sorted by descending priority, into this list. Subscriptions of equal
+     * priority keep their registration order, so the result equals adding them one by one.
+     */
+    void addAll(List<Subscription> newSubscriptions) {
+        Subscription[] current = subscriptions;
+        int newSize = newSubscriptions.size();
+        Subscription[] updated = new Subscription[activeCount + newSize];
+        int count = 0;
+        int newIndex = 0;
+        for (Subscription subscription : current) {
+            if (!subscription.active) {
+                continue;
+            }
+            // Already added subscriptions go first among equal priorities
+            while (newIndex < newSize &&
+                    newSubscriptions.get(newIndex).subscriberMethod.priority > subscription.subscriberMethod.priority) {
+                updated[count++] = newSubscriptions.get(newIndex++);
+            }
+            updated[count++] = subscription;
+        }
+        while (newIndex < newSize) {
+            updated[count++] = newSubscriptions.get(newIndex++);
+        }
+        publish(updated);
+    }
+
+    /** Deactivates the subscription, which must be part of this list. */
+    void remove(Subscription subscription) {
+        if (!subscription.active) {
+            return;
+        }
+        subscription.deactivate();
+        int newActiveCount = activeCount - 1;
+        Subscription[] current = subscriptions;
+        if (current.length - newActiveCount > newActiveCount) {
+            Subscription[] updated = new Subscription[newActiveCount];
+            int count = 0;
+            for (Subscription candidate : current) {
+                if (candidate.active) {
+                    updated[count++] = candidate;
+                }
+            }
+            subscriptions = updated;
+        }
+        activeCount = newActiveCount;
+    }
+
+    private void publish(Subscription[] updated) {
+        subscriptions = updated;
+        activeCount = updated.length;
+    }
+}
@@ -26,6 +26,7 @@ public abstract class AbstractSubscriberInfo implements SubscriberInfo {
     private final Class subscriberClass;
     private final Class<? extends SubscriberInfo> superSubscriberInfoClass;
     private final boolean shouldCheckSuperclass;
+    private volatile SubscriberInfo superSubscriberInfo;
 
     protected AbstractSubscriberInfo(Class subscriberClass, Class<? extends SubscriberInfo> superSubscriberInfoClass,
                                      boolean shouldCheckSuperclass) {
@@ -44,13 +45,19 @@ public abstract class AbstractSubscriberInfo implements SubscriberInfo {
         if(superSubscriberInfoClass == null) {
             return null;
         }
-        try {
-            return superSubscriberInfoClass.newInstance();
-        } catch (InstantiationException e) {
-            throw new RuntimeException(e);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
+        SubscriberInfo info = superSubscriberInfo;
+        if (info == null) {
+            // Instantiated only once; racing threads may create a spare instance, which is harmless
+            try {
+                info = superSubscriberInfoClass.newInstance();
+            } catch (InstantiationException e) {
+                throw new RuntimeException(e);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+            superSubscriberInfo = info;
         }
+        return info;
     }
 
     @Override
@@ -68,11 +75,17 @@ public abstract class AbstractSubscriberInfo implements SubscriberInfo {
 
     protected SubscriberMethod createSubscriberMethod(String methodName, Class<?> eventType, ThreadMode threadMode,
                                                       int priority, boolean sticky) {
+        return createSubscriberMethod(subscriberClass, methodName, eventType, threadMode, priority, sticky);
+    }
+
+    /** For methods declared by a superclass of the subscriber class. */
+    protected SubscriberMethod createSubscriberMethod(Class<?> declaringClass, String methodName, Class<?> eventType,
+                                                      ThreadMode threadMode, int priority, boolean sticky) {
         try {
-            Method method = subscriberClass.getDeclaredMethod(methodName, eventType);
+            Method method = declaringClass.getDeclaredMethod(methodName, eventType);
             return new SubscriberMethod(method, eventType, threadMode, priority, sticky);
         } catch (NoSuchMethodException e) {
-            throw new EventBusException("Could not find subscriber method in " + subscriberClass +
+            throw new EventBusException("Could not find subscriber method in " + declaringClass +
                     ". Maybe a missing ProGuard rule?", e);
         }
     }
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus.meta;
+
+/**
+ * Index that can also list all subscriber classes it knows about, e.g. to preload them (see
+ * {@link org.greenrobot.eventbus.EventBus#preloadIndexedSubscribers()}). Implemented by generated indexes.
+ */
+public interface EnumerableSubscriberInfoIndex extends SubscriberInfoIndex {
+    Class<?>[] getSubscriberClasses();
+
+    /**
+     * Names of the subscriber classes; unlike {@link #getSubscriberClasses()} this must not load any classes. Used by
+     * EventBus to merge multiple indexes into a single lookup table.
+     */
+    String[] getSubscriberClassNames();
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus.meta;
+
+/**
+ * Precomputed event type hierarchies, so EventBus does not have to reflect on them with event inheritance enabled.
+ * Generated indexes implement this in addition to {@link SubscriberInfoIndex} for the event types of their subscriber
+ * methods.
+ */
+public interface EventTypeIndex {
+    /**
+     * Returns the given class, its interfaces (recursively, without duplicates) and then the same for each superclass
+     * up to Object, in the order EventBus would find them via reflection. Null if the class is not indexed.
+     */
+    Class<?>[] getEventTypes(Class<?> eventClass);
+}
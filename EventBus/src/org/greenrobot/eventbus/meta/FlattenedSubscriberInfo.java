@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus.meta;
+
+/**
+ * Marks a {@link SubscriberInfo} whose {@link SubscriberInfo#getSubscriberMethods()} already include the methods
+ * inherited from all superclasses, with overridden methods only once (subclass methods first). EventBus then uses them
+ * as they are, without looking at superclasses or checking for overrides. Indexes generated by the annotation
+ * processor and the index scanner create these through {@link SimpleSubscriberInfo#flattened(Class,
+ * SubscriberMethodInfo[])}.
+ * <p/>
+ * {@link SubscriberInfo#shouldCheckSuperclass()} is not used for this, so existing infos keep their meaning.
+ */
+public interface FlattenedSubscriberInfo extends SubscriberInfo {
+}
@@ -24,22 +24,49 @@ import org.greenrobot.eventbus.SubscriberMethod;
 public class SimpleSubscriberInfo extends AbstractSubscriberInfo {
 
     private final SubscriberMethodInfo[] methodInfos;
+    /** Resolved once; racing threads may resolve concurrently, but publish equal results. */
+    private volatile SubscriberMethod[] subscriberMethods;
 
     public SimpleSubscriberInfo(Class subscriberClass, boolean shouldCheckSuperclass, SubscriberMethodInfo[] methodInfos) {
         super(subscriberClass, null, shouldCheckSuperclass);
         this.methodInfos = methodInfos;
     }
 
+    /**
+     * Creates a {@link FlattenedSubscriberInfo}: the given methods include those inherited from all superclasses, see
+     * there.
+     */
+    public static SimpleSubscriberInfo flattened(Class subscriberClass, SubscriberMethodInfo[] methodInfos) {
+        return new Flattened(subscriberClass, methodInfos);
+    }
+
     //通过methodInfos获取SubscriberMethod
+    /** Returns the same, shared array on each call; callers must not modify it. */
     @Override
-    public synchronized SubscriberMethod[] getSubscriberMethods() {
-        int length = methodInfos.length;
-        SubscriberMethod[] methods = new SubscriberMethod[length];
-        for (int i = 0; i < length; i++) {
-            SubscriberMethodInfo info = methodInfos[i];
-            methods[i] = createSubscriberMethod(info.methodName, info.eventType, info.threadMode,
-                    info.priority, info.sticky);
+    public SubscriberMethod[] getSubscriberMethods() {
+        SubscriberMethod[] methods = subscriberMethods;
+        if (methods == null) {
+            int length = methodInfos.length;
+            methods = new SubscriberMethod[length];
+            for (int i = 0; i < length; i++) {
+                SubscriberMethodInfo info = methodInfos[i];
+                Class<?> declaringClass = info.declaringClass != null ? info.declaringClass : getSubscriberClass();
+                if (info.invoker != null) {
+                    methods[i] = new SubscriberMethod(declaringClass, info.methodName, info.invoker, info.eventType,
+                            info.threadMode, info.priority, info.sticky);
+                } else {
+                    methods[i] = createSubscriberMethod(declaringClass, info.methodName, info.eventType,
+                            info.threadMode, info.priority, info.sticky);
+                }
+            }
+            subscriberMethods = methods;
         }
         return methods;
     }
+
+    private static class Flattened extends SimpleSubscriberInfo implements FlattenedSubscriberInfo {
+        Flattened(Class subscriberClass, SubscriberMethodInfo[] methodInfos) {
+            super(subscriberClass, false, methodInfos);
+        }
+    }
 }
\ No newline at end of file
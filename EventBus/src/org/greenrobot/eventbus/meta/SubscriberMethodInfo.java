@@ -19,6 +19,10 @@ import org.greenrobot.eventbus.ThreadMode;
 //ok
 public class SubscriberMethodInfo {
     final String methodName;
+    /** Null if the method is declared by the subscriber class itself. */
+    final Class<?> declaringClass;
+    /** Null if the method is invoked by reflection. */
+    final SubscriberMethodInvoker invoker;
     final ThreadMode threadMode;
     final Class<?> eventType;
     final int priority;
@@ -26,7 +30,24 @@ public class SubscriberMethodInfo {
 
     public SubscriberMethodInfo(String methodName, Class<?> eventType, ThreadMode threadMode,
                                 int priority, boolean sticky) {
+        this(methodName, null, eventType, threadMode, priority, sticky);
+    }
+
+    /** For methods inherited from a superclass, see {@link FlattenedSubscriberInfo}. */
+    public SubscriberMethodInfo(String methodName, Class<?> declaringClass, Class<?> eventType, ThreadMode threadMode,
+                                int priority, boolean sticky) {
+        this(null, methodName, declaringClass, eventType, threadMode, priority, sticky);
+    }
+
+    /**
+     * For methods the generated index calls directly instead of looking them up by reflection, e.g. because they are
+     * not accessible to EventBus.
+     */
+    public SubscriberMethodInfo(SubscriberMethodInvoker invoker, String methodName, Class<?> declaringClass,
+                                Class<?> eventType, ThreadMode threadMode, int priority, boolean sticky) {
+        this.invoker = invoker;
         this.methodName = methodName;
+        this.declaringClass = declaringClass;
         this.threadMode = threadMode;
         this.eventType = eventType;
         this.priority = priority;
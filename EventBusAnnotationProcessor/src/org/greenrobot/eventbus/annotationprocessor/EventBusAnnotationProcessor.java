@@ -23,8 +23,12 @@ import org.greenrobot.eventbus.ThreadMode;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.processing.AbstractProcessor;
@@ -34,6 +38,7 @@ import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.annotation.processing.SupportedOptions;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.PackageElement;
@@ -77,6 +82,16 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
     private boolean writerRoundDone;//writerRoundDone，用于标记多次进入process异常情况
     private int round;//round过程，用于标记多次进入process异常情况
     private boolean verbose;//是否打印所有log
+    /** Subscribers per nested shard class of the generated index. */
+    private static final int SUBSCRIBERS_PER_SHARD = 32;
+    /**
+     * Appended to the simple name of the index for the helper classes generated into packages of subscribers the
+     * index cannot access itself.
+     */
+    private static final String PACKAGE_SUBSCRIBERS_SUFFIX = "_PackageSubscribers";
+    /** Platform types without supertypes (except Object) on all platform versions. */
+    private static final Set<String> STABLE_PLATFORM_TYPES =
+            new HashSet<>(Arrays.asList("java.lang.Object", "java.io.Serializable"));
     //endregion
 
     @Override
@@ -185,12 +200,11 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
                 if (!isVisible(myPackage, subscriberClass)) {
                     boolean added = classesToSkip.add(skipCandidate);
                     if (added) {
-                        String msg;
+                        String msg = getSkipMessagePrefix(skipCandidate);
                         if (subscriberClass.equals(skipCandidate)) {
-                            msg = "Falling back to reflection because class is not public";
+                            msg += " because class is not public";
                         } else {
-                            msg = "Falling back to reflection because " + skipCandidate +
-                                    " has a non-public super class";
+                            msg += " because " + skipCandidate + " has a non-public super class";
                         }
                         messager.printMessage(Diagnostic.Kind.NOTE, msg, subscriberClass);
                     }
@@ -224,7 +238,7 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
                             // 将不合格的订阅类记录下来
                             boolean added = classesToSkip.add(skipCandidate);
                             if (added) {
-                                String msg = "Falling back to reflection because " + skipReason;
+                                String msg = getSkipMessagePrefix(skipCandidate) + " because " + skipReason;
                                 if (!subscriberClass.equals(skipCandidate)) {
                                     msg += " (found in super class for " + skipCandidate + ")";
                                 }
@@ -240,6 +254,14 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
         }
     }
 
+    private String getSkipMessagePrefix(TypeElement skipCandidate) {
+        if (getPackageSubscriberMethods(skipCandidate) != null) {
+            return "Indexing through a helper class in the subscriber's package";
+        } else {
+            return "Falling back to reflection";
+        }
+    }
+
     private TypeMirror getParamTypeMirror(VariableElement param, Messager messager) {
         // 获取元素类型
         TypeMirror typeMirror = param.asType();
@@ -268,6 +290,11 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
 
     /**
      * eventBusIndex index表示生成的MyEventBusIndex 类名+className
+     * <p>
+     * The generated index does not create anything up front: subscribers are distributed over nested shard classes
+     * by the hash of their class name, which is computed here at compile time. Each shard switches on the class name
+     * and creates a SubscriberInfo on first lookup, so class initialization stays small and startup cost is
+     * proportional to the subscribers actually used.
      *
      * @param index
      */
@@ -282,39 +309,137 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
             String myPackage = period > 0 ? index.substring(0, period) : null;
             // 截取出类名
             String clazz = index.substring(period + 1);
+
+            // 收集可以索引的订阅者，按类名的hash分到各个shard
+            List<TypeElement> subscriberTypes = getIndexedSubscriberTypes(myPackage);
+            // 索引访问不到的订阅者，通过生成到订阅者包里的helper类来索引
+            ListMap<String, TypeElement> packageSubscriberTypes = getPackageIndexedSubscriberTypes(myPackage);
+            Map<TypeElement, String> packageInfoCalls = new HashMap<>();
+            for (Map.Entry<String, List<TypeElement>> entry : packageSubscriberTypes.entrySet()) {
+                String helperClass = getPackageSubscribersClass(entry.getKey(), clazz);
+                List<TypeElement> types = entry.getValue();
+                for (int i = 0; i < types.size(); i++) {
+                    packageInfoCalls.put(types.get(i), helperClass + ".createSubscriberInfo(" + i + ")");
+                    subscriberTypes.add(types.get(i));
+                }
+            }
+            int shardCount = Math.max(1, (subscriberTypes.size() + SUBSCRIBERS_PER_SHARD - 1) / SUBSCRIBERS_PER_SHARD);
+            ListMap<Integer, TypeElement> subscriberTypesByShard = new ListMap<>();
+            for (TypeElement subscriberType : subscriberTypes) {
+                subscriberTypesByShard.putElement(getShard(getBinaryName(subscriberType), shardCount), subscriberType);
+            }
+            // 事件类型的层级（父类和接口），同样分到各个shard
+            Map<TypeElement, List<TypeElement>> eventTypeHierarchies =
+                    getEventTypeHierarchies(subscriberTypes, myPackage);
+            int eventTypeShardCount = Math.max(1,
+                    (eventTypeHierarchies.size() + SUBSCRIBERS_PER_SHARD - 1) / SUBSCRIBERS_PER_SHARD);
+            ListMap<Integer, TypeElement> eventTypesByShard = new ListMap<>();
+            for (TypeElement eventType : eventTypeHierarchies.keySet()) {
+                eventTypesByShard.putElement(getShard(getBinaryName(eventType), eventTypeShardCount), eventType);
+            }
+
             //开始向Java文件中写入代码
             writer = new BufferedWriter(sourceFile.openWriter());
             if (myPackage != null) {
                 writer.write("package " + myPackage + ";\n\n");
             }
+            writer.write("import org.greenrobot.eventbus.meta.EnumerableSubscriberInfoIndex;\n");
+            writer.write("import org.greenrobot.eventbus.meta.EventTypeIndex;\n");
             writer.write("import org.greenrobot.eventbus.meta.SimpleSubscriberInfo;\n");
             writer.write("import org.greenrobot.eventbus.meta.SubscriberMethodInfo;\n");
             writer.write("import org.greenrobot.eventbus.meta.SubscriberInfo;\n");
-            writer.write("import org.greenrobot.eventbus.meta.SubscriberInfoIndex;\n\n");
             writer.write("import org.greenrobot.eventbus.ThreadMode;\n\n");
-            writer.write("import java.util.HashMap;\n");
-            writer.write("import java.util.Map;\n\n");
+            if (!packageSubscriberTypes.isEmpty()) {
+                writer.write("import java.util.ArrayList;\n");
+                writer.write("import java.util.Collections;\n");
+                writer.write("import java.util.List;\n");
+            }
+            writer.write("import java.util.concurrent.atomic.AtomicReferenceArray;\n\n");
             writer.write("/** This class is generated by EventBus, do not edit. */\n");
-            writer.write("public class " + clazz + " implements SubscriberInfoIndex {\n");
-            writer.write("    private static final Map<Class<?>, SubscriberInfo> SUBSCRIBER_INDEX;\n\n");
-            writer.write("    static {\n");
-            writer.write("        SUBSCRIBER_INDEX = new HashMap<Class<?>, SubscriberInfo>();\n\n");
-            // 写入查找到的订阅者的相关代码
-            writeIndexLines(writer, myPackage);
+            writer.write("public class " + clazz + " implements EnumerableSubscriberInfoIndex, EventTypeIndex {\n");
+            writer.write("    private static final int SHARD_COUNT = " + shardCount + ";\n");
+            writer.write("    private static final int EVENT_TYPE_SHARD_COUNT = " + eventTypeShardCount + ";\n\n");
+            writer.write("    @Override\n");
+            writer.write("    public SubscriberInfo getSubscriberInfo(Class<?> subscriberClass) {\n");
+            writer.write("        String name = subscriberClass.getName();\n");
+            writer.write("        switch ((name.hashCode() & 0x7fffffff) % SHARD_COUNT) {\n");
+            for (int shard = 0; shard < shardCount; shard++) {
+                if (subscriberTypesByShard.get(shard) != null) {
+                    writer.write("            case " + shard + ":\n");
+                    writer.write("                return Shard" + shard +
+                            ".getSubscriberInfo(subscriberClass, name);\n");
+                }
+            }
+            writer.write("            default:\n");
+            writer.write("                return null;\n");
+            writer.write("        }\n");
             writer.write("    }\n\n");
-            writer.write("    private static void putIndex(SubscriberInfo info) {\n");
-            writer.write("        SUBSCRIBER_INDEX.put(info.getSubscriberClass(), info);\n");
+            writer.write("    @Override\n");
+            writer.write("    public Class<?>[] getSubscriberClasses() {\n");
+            if (packageSubscriberTypes.isEmpty()) {
+                writer.write("        return new Class<?>[] {\n");
+                for (TypeElement subscriberType : subscriberTypes) {
+                    writer.write("            " + getClassString(subscriberType, myPackage) + ".class,\n");
+                }
+                writer.write("        };\n");
+            } else {
+                writer.write("        List<Class<?>> subscriberClasses = new ArrayList<Class<?>>(" +
+                        subscriberTypes.size() + ");\n");
+                List<TypeElement> accessibleTypes = subscriberTypes.subList(0,
+                        subscriberTypes.size() - packageInfoCalls.size());
+                for (int i = 0; i < accessibleTypes.size(); i++) {
+                    if (i == 0) {
+                        writer.write("        Collections.addAll(subscriberClasses,\n");
+                    }
+                    writer.write("                " + getClassString(accessibleTypes.get(i), myPackage) + ".class" +
+                            (i < accessibleTypes.size() - 1 ? ",\n" : ");\n"));
+                }
+                for (String packageName : packageSubscriberTypes.keySet()) {
+                    writer.write("        Collections.addAll(subscriberClasses, " +
+                            getPackageSubscribersClass(packageName, clazz) + ".getSubscriberClasses());\n");
+                }
+                writer.write("        return subscriberClasses.toArray(new Class<?>[subscriberClasses.size()]);\n");
+            }
             writer.write("    }\n\n");
             writer.write("    @Override\n");
-            writer.write("    public SubscriberInfo getSubscriberInfo(Class<?> subscriberClass) {\n");
-            writer.write("        SubscriberInfo info = SUBSCRIBER_INDEX.get(subscriberClass);\n");
-            writer.write("        if (info != null) {\n");
-            writer.write("            return info;\n");
-            writer.write("        } else {\n");
-            writer.write("            return null;\n");
+            writer.write("    public String[] getSubscriberClassNames() {\n");
+            writer.write("        return new String[] {\n");
+            for (TypeElement subscriberType : subscriberTypes) {
+                writer.write("            \"" + getBinaryName(subscriberType) + "\",\n");
+            }
+            writer.write("        };\n");
+            writer.write("    }\n\n");
+            writer.write("    @Override\n");
+            writer.write("    public Class<?>[] getEventTypes(Class<?> eventClass) {\n");
+            writer.write("        String name = eventClass.getName();\n");
+            writer.write("        switch ((name.hashCode() & 0x7fffffff) % EVENT_TYPE_SHARD_COUNT) {\n");
+            for (int shard = 0; shard < eventTypeShardCount; shard++) {
+                if (eventTypesByShard.get(shard) != null) {
+                    writer.write("            case " + shard + ":\n");
+                    writer.write("                return EventTypes" + shard + ".getEventTypes(eventClass, name);\n");
+                }
+            }
+            writer.write("            default:\n");
+            writer.write("                return null;\n");
             writer.write("        }\n");
             writer.write("    }\n");
+            for (int shard = 0; shard < shardCount; shard++) {
+                List<TypeElement> shardTypes = subscriberTypesByShard.get(shard);
+                if (shardTypes != null) {
+                    writeShard(writer, shard, shardTypes, packageInfoCalls, myPackage);
+                }
+            }
+            for (int shard = 0; shard < eventTypeShardCount; shard++) {
+                List<TypeElement> shardTypes = eventTypesByShard.get(shard);
+                if (shardTypes != null) {
+                    writeEventTypesShard(writer, shard, shardTypes, eventTypeHierarchies, myPackage);
+                }
+            }
             writer.write("}\n");
+
+            for (Map.Entry<String, List<TypeElement>> entry : packageSubscriberTypes.entrySet()) {
+                createPackageSubscribersFile(entry.getKey(), clazz, index, entry.getValue());
+            }
         } catch (IOException e) {
             throw new RuntimeException("Could not write source for " + index, e);
         } finally {
@@ -328,35 +453,402 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
         }
     }
 
-    private void writeIndexLines(BufferedWriter writer, String myPackage) throws IOException {
+    private List<TypeElement> getIndexedSubscriberTypes(String myPackage) {
+        List<TypeElement> subscriberTypes = new ArrayList<>();
         // 遍历methodsByClass
         for (TypeElement subscriberTypeElement : methodsByClass.keySet()) {//TypeElement
-            // 跳过不合格的订阅者
-            if (classesToSkip.contains(subscriberTypeElement)) {
+            // 跳过不合格的订阅者，再一次检查是否可访问
+            if (!classesToSkip.contains(subscriberTypeElement) && isVisible(myPackage, subscriberTypeElement)) {
+                subscriberTypes.add(subscriberTypeElement);
+            }
+        }
+        return subscriberTypes;
+    }
+
+    /**
+     * Subscribers the index cannot access, but which can be indexed by a helper class in their own package, grouped by
+     * package.
+     */
+    private ListMap<String, TypeElement> getPackageIndexedSubscriberTypes(String myPackage) {
+        ListMap<String, TypeElement> subscriberTypesByPackage = new ListMap<>();
+        for (TypeElement subscriberTypeElement : methodsByClass.keySet()) {
+            if (!classesToSkip.contains(subscriberTypeElement) && isVisible(myPackage, subscriberTypeElement)) {
+                continue;
+            }
+            if (getPackageSubscriberMethods(subscriberTypeElement) != null) {
+                String packageName = getPackageElement(subscriberTypeElement).getQualifiedName().toString();
+                subscriberTypesByPackage.putElement(packageName, subscriberTypeElement);
+            }
+        }
+        return subscriberTypesByPackage;
+    }
+
+    /**
+     * Like {@link #getFlattenedSubscriberMethods(TypeElement, String)}, but for a helper class in the package of the
+     * subscriber. Returns null if the subscriber cannot be indexed that way either, e.g. because it is private or in
+     * the default package.
+     */
+    private List<ExecutableElement> getPackageSubscriberMethods(TypeElement subscriberType) {
+        String packageName = getPackageElement(subscriberType).getQualifiedName().toString();
+        if (packageName.isEmpty()) {
+            return null;
+        }
+        for (TypeElement clazz = subscriberType; clazz != null; clazz = getSuperclass(clazz)) {
+            if (!isAccessible(packageName, clazz)) {
+                return null;
+            }
+        }
+        List<ExecutableElement> methods = getFlattenedSubscriberMethods(subscriberType, packageName);
+        if (methods == null) {
+            return null;
+        }
+        for (ExecutableElement method : methods) {
+            TypeMirror paramType = getParamTypeMirror(method.getParameters().get(0), null);
+            if (!isAccessible(packageName, (TypeElement) processingEnv.getTypeUtils().asElement(paramType))) {
+                return null;
+            }
+        }
+        return methods;
+    }
+
+    /** Unlike isVisible, also checks the enclosing classes of nested classes. */
+    private boolean isAccessible(String packageName, TypeElement typeElement) {
+        Element element = typeElement;
+        while (element instanceof TypeElement) {
+            if (!isVisible(packageName, (TypeElement) element)) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private String getPackageSubscribersClass(String packageName, String indexClass) {
+        return packageName + "." + indexClass + PACKAGE_SUBSCRIBERS_SUFFIX;
+    }
+
+    /**
+     * Writes the helper class for subscribers of the given package which the index cannot access. It creates their
+     * infos for the index, with methods called directly by an invoker, so neither the index nor EventBus need access
+     * to them.
+     */
+    private void createPackageSubscribersFile(String packageName, String indexClass, String index,
+                                              List<TypeElement> subscriberTypes) throws IOException {
+        String clazz = indexClass + PACKAGE_SUBSCRIBERS_SUFFIX;
+        JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(packageName + "." + clazz);
+        // 同一个父类方法只生成一个invoker分支
+        Map<ExecutableElement, Integer> invokerIndexes = new LinkedHashMap<>();
+        BufferedWriter writer = new BufferedWriter(sourceFile.openWriter());
+        try {
+            writer.write("package " + packageName + ";\n\n");
+            writer.write("import org.greenrobot.eventbus.meta.SimpleSubscriberInfo;\n");
+            writer.write("import org.greenrobot.eventbus.meta.SubscriberInfo;\n");
+            writer.write("import org.greenrobot.eventbus.meta.SubscriberMethodInfo;\n");
+            writer.write("import org.greenrobot.eventbus.meta.SubscriberMethodInvoker;\n");
+            writer.write("import org.greenrobot.eventbus.ThreadMode;\n\n");
+            writer.write("import java.lang.reflect.InvocationTargetException;\n\n");
+            writer.write("/** This class is generated by EventBus for " + index + ", do not edit. */\n");
+            writer.write("public final class " + clazz + " {\n");
+            writer.write("    private " + clazz + "() {\n");
+            writer.write("    }\n\n");
+            writer.write("    public static Class<?>[] getSubscriberClasses() {\n");
+            writer.write("        return new Class<?>[] {\n");
+            for (TypeElement subscriberType : subscriberTypes) {
+                writer.write("            " + getClassString(subscriberType, packageName) + ".class,\n");
+            }
+            writer.write("        };\n");
+            writer.write("    }\n\n");
+            writer.write("    public static SubscriberInfo createSubscriberInfo(int index) {\n");
+            writer.write("        switch (index) {\n");
+            for (int i = 0; i < subscriberTypes.size(); i++) {
+                TypeElement subscriberType = subscriberTypes.get(i);
+                String subscriberClass = getClassString(subscriberType, packageName);
+                writer.write("            case " + i + ":\n");
+                writeLine(writer, 4, "return SimpleSubscriberInfo.flattened(" + subscriberClass + ".class,",
+                        "new SubscriberMethodInfo[] {");
+                for (ExecutableElement method : getPackageSubscriberMethods(subscriberType)) {
+                    Integer invokerIndex = invokerIndexes.get(method);
+                    if (invokerIndex == null) {
+                        invokerIndex = invokerIndexes.size();
+                        invokerIndexes.put(method, invokerIndex);
+                    }
+                    TypeElement declaringType = (TypeElement) method.getEnclosingElement();
+                    TypeMirror paramType = getParamTypeMirror(method.getParameters().get(0), null);
+                    TypeElement paramElement = (TypeElement) processingEnv.getTypeUtils().asElement(paramType);
+                    Subscribe subscribe = method.getAnnotation(Subscribe.class);
+                    writeLine(writer, 5,
+                            "new SubscriberMethodInfo(new Invoker(" + invokerIndex + "),",
+                            "\"" + method.getSimpleName() + "\",",
+                            getClassString(declaringType, packageName) + ".class,",
+                            getClassString(paramElement, packageName) + ".class,",
+                            "ThreadMode." + subscribe.threadMode().name() + ",",
+                            subscribe.priority() + ",",
+                            subscribe.sticky() + "),");
+                }
+                writer.write("                });\n");
+            }
+            writer.write("            default:\n");
+            writer.write("                throw new IllegalArgumentException(\"Unknown subscriber \" + index);\n");
+            writer.write("        }\n");
+            writer.write("    }\n\n");
+            writer.write("    /** Calls subscriber methods directly, EventBus may not be allowed to call them by reflection." +
+                    " */\n");
+            writer.write("    private static final class Invoker implements SubscriberMethodInvoker {\n");
+            writer.write("        private final int method;\n\n");
+            writer.write("        Invoker(int method) {\n");
+            writer.write("            this.method = method;\n");
+            writer.write("        }\n\n");
+            writer.write("        @SuppressWarnings({\"rawtypes\", \"unchecked\"})\n");
+            writer.write("        @Override\n");
+            writer.write("        public void invoke(Object subscriber, Object event)" +
+                    " throws InvocationTargetException {\n");
+            writer.write("            try {\n");
+            writer.write("                switch (method) {\n");
+            for (Map.Entry<ExecutableElement, Integer> entry : invokerIndexes.entrySet()) {
+                ExecutableElement method = entry.getKey();
+                // 通过声明方法的类调用（raw type），参数是擦除后的类型，和反射调用一致
+                TypeElement declaringType = (TypeElement) method.getEnclosingElement();
+                TypeMirror paramType = getParamTypeMirror(method.getParameters().get(0), null);
+                TypeElement paramElement = (TypeElement) processingEnv.getTypeUtils().asElement(paramType);
+                writer.write("                    case " + entry.getValue() + ":\n");
+                writeLine(writer, 6, "((" + getClassString(declaringType, packageName) + ") subscriber)." +
+                        method.getSimpleName() + "((" + getClassString(paramElement, packageName) + ")", "event);");
+                writer.write("                        break;\n");
+            }
+            writer.write("                    default:\n");
+            writer.write("                        throw new IllegalStateException(\"Unknown method \" + method);\n");
+            writer.write("                }\n");
+            writer.write("            } catch (Throwable e) {\n");
+            writer.write("                // Like Method.invoke, wraps anything the subscriber throws\n");
+            writer.write("                throw new InvocationTargetException(e);\n");
+            writer.write("            }\n");
+            writer.write("        }\n");
+            writer.write("    }\n");
+            writer.write("}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeShard(BufferedWriter writer, int shard, List<TypeElement> subscriberTypes,
+                            Map<TypeElement, String> packageInfoCalls, String myPackage) throws IOException {
+        writer.write("\n");
+        writer.write("    /** Creates the infos of its subscribers on first lookup. */\n");
+        writer.write("    private static final class Shard" + shard + " {\n");
+        writer.write("        private static final AtomicReferenceArray<SubscriberInfo> INFOS =\n");
+        writer.write("                new AtomicReferenceArray<SubscriberInfo>(" + subscriberTypes.size() + ");\n\n");
+        writer.write("        static SubscriberInfo getSubscriberInfo(Class<?> subscriberClass, String name) {\n");
+        writer.write("            int index;\n");
+        writer.write("            switch (name) {\n");
+        for (int i = 0; i < subscriberTypes.size(); i++) {
+            writer.write("                case \"" + getBinaryName(subscriberTypes.get(i)) + "\":\n");
+            writer.write("                    index = " + i + ";\n");
+            writer.write("                    break;\n");
+        }
+        writer.write("                default:\n");
+        writer.write("                    return null;\n");
+        writer.write("            }\n");
+        writer.write("            SubscriberInfo info = INFOS.get(index);\n");
+        writer.write("            if (info == null) {\n");
+        writer.write("                // Racing threads may create equal infos, only the first one is kept\n");
+        writer.write("                INFOS.compareAndSet(index, null, createSubscriberInfo(index));\n");
+        writer.write("                info = INFOS.get(index);\n");
+        writer.write("            }\n");
+        writer.write("            // A class of the same name from another class loader is not indexed\n");
+        writer.write("            return info.getSubscriberClass() == subscriberClass ? info : null;\n");
+        writer.write("        }\n\n");
+        writer.write("        private static SubscriberInfo createSubscriberInfo(int index) {\n");
+        writer.write("            switch (index) {\n");
+        for (int i = 0; i < subscriberTypes.size(); i++) {
+            TypeElement subscriberTypeElement = subscriberTypes.get(i);
+            String packageInfoCall = packageInfoCalls.get(subscriberTypeElement);
+            if (packageInfoCall != null) {
+                writer.write("                case " + i + ":\n");
+                writer.write("                    return " + packageInfoCall + ";\n");
                 continue;
             }
             // 获取订阅类的字符串名称，格式是：包名.类名.class
             String subscriberClass = getClassString(subscriberTypeElement, myPackage);
-            // 再一次检查是否可访问
-            if (isVisible(myPackage, subscriberTypeElement)) {
-                writeLine(writer, 2,
-                        "putIndex(new SimpleSubscriberInfo(" + subscriberClass + ".class,",
-                        "true,", "new SubscriberMethodInfo[] {");
-                // 取出订阅类的所有订阅方法
-                List<ExecutableElement> methods = methodsByClass.get(subscriberTypeElement);//ExecutableElement
-                // 生成 [new 一个SubscriberMethodInfo，并将订阅方法的相关信息写入]ava的代码
-                writeCreateSubscriberMethods(writer, methods, "new SubscriberMethodInfo", myPackage);
-                writer.write("        }));\n\n");
+            // 取出订阅类及其父类的所有订阅方法，合并不了时只取订阅类自己的，运行时再查父类
+            List<ExecutableElement> methods = getFlattenedSubscriberMethods(subscriberTypeElement, myPackage);
+            writer.write("                case " + i + ":\n");
+            if (methods != null) {
+                writeLine(writer, 5, "return SimpleSubscriberInfo.flattened(" + subscriberClass + ".class,",
+                        "new SubscriberMethodInfo[] {");
             } else {
-                writer.write("        // Subscriber not visible to index: " + subscriberClass + "\n");
+                methods = methodsByClass.get(subscriberTypeElement);//ExecutableElement
+                writeLine(writer, 5, "return new SimpleSubscriberInfo(" + subscriberClass + ".class,", "true,",
+                        "new SubscriberMethodInfo[] {");
+            }
+            // 生成 [new 一个SubscriberMethodInfo，并将订阅方法的相关信息写入]ava的代码
+            writeCreateSubscriberMethods(writer, subscriberTypeElement, methods, "new SubscriberMethodInfo",
+                    myPackage, 6);
+            writer.write("                    });\n");
+        }
+        writer.write("                default:\n");
+        writer.write("                    throw new IllegalArgumentException(\"Unknown subscriber \" + index);\n");
+        writer.write("            }\n");
+        writer.write("        }\n");
+        writer.write("    }\n");
+    }
+
+    /**
+     * The subscriber methods of the class and all its superclasses as SubscriberMethodFinder would find them at
+     * runtime: subclass methods first, and a method overridden by a subclass only once (by method name and event
+     * type). This lets EventBus register indexed subscribers without walking the hierarchy. Returns null if a
+     * superclass method cannot be referenced by the index.
+     */
+    private List<ExecutableElement> getFlattenedSubscriberMethods(TypeElement subscriberType, String myPackage) {
+        List<ExecutableElement> flattened = new ArrayList<>();
+        Set<String> methodKeys = new HashSet<>();
+        TypeElement clazz = subscriberType;
+        while (clazz != null) {
+            // Superclasses compiled separately (e.g. from a library) are not part of methodsByClass
+            List<ExecutableElement> methods = methodsByClass.containsKey(clazz) ? methodsByClass.get(clazz) :
+                    getSubscriberMethodsOfCompiledClass(clazz, myPackage);
+            if (methods == null) {
+                return null;
+            }
+            for (ExecutableElement method : methods) {
+                TypeMirror paramType = getParamTypeMirror(method.getParameters().get(0), null);
+                Element paramElement = processingEnv.getTypeUtils().asElement(paramType);
+                if (!(paramElement instanceof TypeElement)) {
+                    return null;
+                }
+                if (methodKeys.add(method.getSimpleName() + ">" + getBinaryName((TypeElement) paramElement))) {
+                    flattened.add(method);
+                }
+            }
+            clazz = getSuperclass(clazz);
+        }
+        return flattened;
+    }
+
+    /**
+     * The @Subscribe methods of a class that has no methods in methodsByClass. Returns null if any of them would not
+     * pass checkHasNoErrors or its event type is not visible to the index.
+     */
+    private List<ExecutableElement> getSubscriberMethodsOfCompiledClass(TypeElement type, String myPackage) {
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (Element element : type.getEnclosedElements()) {
+            if (element.getKind() != ElementKind.METHOD || element.getAnnotation(Subscribe.class) == null) {
+                continue;
+            }
+            ExecutableElement method = (ExecutableElement) element;
+            Set<Modifier> modifiers = method.getModifiers();
+            if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC) ||
+                    method.getParameters().size() != 1) {
+                return null;
+            }
+            TypeMirror paramType = getParamTypeMirror(method.getParameters().get(0), null);
+            Element paramElement = processingEnv.getTypeUtils().asElement(paramType);
+            if (!(paramElement instanceof TypeElement) || !isVisible(myPackage, (TypeElement) paramElement)) {
+                return null;
             }
+            methods.add(method);
         }
+        return methods;
+    }
+
+    private void writeEventTypesShard(BufferedWriter writer, int shard, List<TypeElement> eventTypes,
+                                      Map<TypeElement, List<TypeElement>> eventTypeHierarchies, String myPackage)
+            throws IOException {
+        writer.write("\n");
+        writer.write("    private static final class EventTypes" + shard + " {\n");
+        writer.write("        static Class<?>[] getEventTypes(Class<?> eventClass, String name) {\n");
+        writer.write("            switch (name) {\n");
+        for (TypeElement eventType : eventTypes) {
+            String eventClass = getClassString(eventType, myPackage) + ".class";
+            writer.write("                case \"" + getBinaryName(eventType) + "\":\n");
+            writer.write("                    return eventClass == " + eventClass + " ? new Class<?>[] {\n");
+            for (TypeElement type : eventTypeHierarchies.get(eventType)) {
+                writer.write("                            " + getClassString(type, myPackage) + ".class,\n");
+            }
+            writer.write("                    } : null;\n");
+        }
+        writer.write("                default:\n");
+        writer.write("                    return null;\n");
+        writer.write("            }\n");
+        writer.write("        }\n");
+        writer.write("    }\n");
+    }
+
+    /**
+     * Collects the event types of all indexed subscriber methods with their supertypes, in the same order as
+     * EventBus.lookupAllEventTypes would find them at runtime. Event types are left out if any supertype cannot be
+     * referenced by the index, or is a platform type (other than Object and Serializable) whose hierarchy may differ
+     * at runtime.
+     */
+    private Map<TypeElement, List<TypeElement>> getEventTypeHierarchies(List<TypeElement> subscriberTypes,
+                                                                        String myPackage) {
+        Map<TypeElement, List<TypeElement>> hierarchies = new LinkedHashMap<>();
+        for (TypeElement subscriberType : subscriberTypes) {
+            for (ExecutableElement method : methodsByClass.get(subscriberType)) {
+                TypeMirror paramType = getParamTypeMirror(method.getParameters().get(0), null);
+                Element paramElement = processingEnv.getTypeUtils().asElement(paramType);
+                if (!(paramElement instanceof TypeElement) || hierarchies.containsKey(paramElement)) {
+                    continue;
+                }
+                TypeElement eventType = (TypeElement) paramElement;
+                List<TypeElement> hierarchy = new ArrayList<>();
+                TypeElement clazz = eventType;
+                while (clazz != null) {
+                    hierarchy.add(clazz);
+                    addInterfaces(hierarchy, clazz.getInterfaces());
+                    clazz = clazz.getSuperclass().getKind() == TypeKind.DECLARED ?
+                            (TypeElement) processingEnv.getTypeUtils().asElement(clazz.getSuperclass()) : null;
+                }
+                boolean indexable = true;
+                for (TypeElement type : hierarchy) {
+                    String name = type.getQualifiedName().toString();
+                    if (isPlatformType(name) ? !STABLE_PLATFORM_TYPES.contains(name) : !isVisible(myPackage, type)) {
+                        indexable = false;
+                        break;
+                    }
+                }
+                if (indexable) {
+                    hierarchies.put(eventType, hierarchy);
+                } else if (verbose) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                            "Event type hierarchy not indexed for " + eventType);
+                }
+            }
+        }
+        return hierarchies;
+    }
+
+    /** Same as EventBus.addInterfaces: recurses through super interfaces, skipping duplicates. */
+    private void addInterfaces(List<TypeElement> types, List<? extends TypeMirror> interfaces) {
+        for (TypeMirror interfaceType : interfaces) {
+            TypeElement interfaceElement = (TypeElement) processingEnv.getTypeUtils().asElement(interfaceType);
+            if (!types.contains(interfaceElement)) {
+                types.add(interfaceElement);
+                addInterfaces(types, interfaceElement.getInterfaces());
+            }
+        }
+    }
+
+    /** Same prefixes as SubscriberMethodFinder.FindState.moveToSuperclass. */
+    private static boolean isPlatformType(String name) {
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("android.") ||
+                name.startsWith("androidx.");
+    }
+
+    /** Class.getName() of the type, which the generated index switches on. */
+    private String getBinaryName(TypeElement typeElement) {
+        return processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+    }
+
+    /** Must match the shard computation of the generated getSubscriberInfo(). */
+    private static int getShard(String binaryName, int shardCount) {
+        return (binaryName.hashCode() & 0x7fffffff) % shardCount;
     }
 
     //很简单，遍历查找到的所有订阅者，然后跳过不合法的订阅者，生成写入订阅者的代码。
     //显然，writeCreateSubscriberMethods方法中生成了写入订阅方法的代码：
-    private void writeCreateSubscriberMethods(BufferedWriter writer, List<ExecutableElement> methods,
-                                              String callPrefix, String myPackage) throws IOException {
+    private void writeCreateSubscriberMethods(BufferedWriter writer, TypeElement subscriberType,
+                                              List<ExecutableElement> methods, String callPrefix, String myPackage,
+                                              int indentLevel) throws IOException {
         // 遍历订阅类中的所有订阅方法
         for (ExecutableElement method : methods) {//ExecutableElement
             // 获取方法参数
@@ -375,8 +867,16 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
             List<String> parts = new ArrayList<>();
             parts.add(callPrefix + "(\"" + methodName + "\",");
             String lineEnd = "),";
+            TypeElement declaringType = (TypeElement) method.getEnclosingElement();
             // 获取注解的值
-            if (subscribe.priority() == 0 && !subscribe.sticky()) {
+            if (!declaringType.equals(subscriberType)) {
+                // 从父类继承的方法，需要声明它的类
+                parts.add(getClassString(declaringType, myPackage) + ".class,");
+                parts.add(eventClass + ",");
+                parts.add("ThreadMode." + subscribe.threadMode().name() + ",");
+                parts.add(subscribe.priority() + ",");
+                parts.add(subscribe.sticky() + lineEnd);
+            } else if (subscribe.priority() == 0 && !subscribe.sticky()) {
                 if (subscribe.threadMode() == ThreadMode.POSTING) {
                     parts.add(eventClass + lineEnd);
                 } else {
@@ -390,7 +890,7 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
                 parts.add(subscribe.sticky() + lineEnd);
             }
             // 生成代码
-            writeLine(writer, 3, parts.toArray(new String[parts.size()]));
+            writeLine(writer, indentLevel, parts.toArray(new String[parts.size()]));
 
             if (verbose) {
                 processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Indexed @Subscribe at " +
@@ -460,7 +960,7 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
         if (type.getSuperclass().getKind() == TypeKind.DECLARED) {//DECLARED宣布
             TypeElement superclass = (TypeElement) processingEnv.getTypeUtils().asElement(type.getSuperclass());//TypeElement
             String name = superclass.getQualifiedName().toString();
-            if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("android.")) {
+            if (isPlatformType(name)) {
                 // Skip system classes, this just degrades performance
                 return null;
             } else {
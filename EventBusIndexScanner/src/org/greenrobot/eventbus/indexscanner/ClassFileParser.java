@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus.indexscanner;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the parts of a class file the index scanner needs, without loading the class: names, access flags,
+ * InnerClasses and the @Subscribe annotations of methods. Everything else is skipped.
+ * See https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html
+ */
+final class ClassFileParser {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final String SUBSCRIBE_DESCRIPTOR = "Lorg/greenrobot/eventbus/Subscribe;";
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private final DataInputStream in;
+    /** Utf8 constants as String, Integer constants as Integer, Class constants as Integer index of their name. */
+    private Object[] constants;
+    private int[] tags;
+
+    private ClassFileParser(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    static ScannedClass parse(InputStream in) throws IOException {
+        return new ClassFileParser(in).parse();
+    }
+
+    private ScannedClass parse() throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+        readConstantPool();
+
+        int access = in.readUnsignedShort();
+        String name = getClassName(in.readUnsignedShort());
+        int superIndex = in.readUnsignedShort();
+        String superName = superIndex != 0 ? getClassName(superIndex) : null;
+        ScannedClass scannedClass = new ScannedClass(name, superName, access);
+        skip(in.readUnsignedShort() * 2); // interfaces
+
+        int fieldCount = in.readUnsignedShort();
+        for (int i = 0; i < fieldCount; i++) {
+            skip(6);
+            skipAttributes();
+        }
+        int methodCount = in.readUnsignedShort();
+        for (int i = 0; i < methodCount; i++) {
+            readMethod(scannedClass);
+        }
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            String attributeName = getUtf8(in.readUnsignedShort());
+            int length = in.readInt();
+            if (attributeName.equals("InnerClasses")) {
+                readInnerClasses(scannedClass);
+            } else {
+                skip(length);
+            }
+        }
+        return scannedClass;
+    }
+
+    private void readConstantPool() throws IOException {
+        int count = in.readUnsignedShort();
+        constants = new Object[count];
+        tags = new int[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            tags[i] = tag;
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    constants[i] = in.readUTF();
+                    break;
+                case CONSTANT_INTEGER:
+                    constants[i] = in.readInt();
+                    break;
+                case CONSTANT_CLASS:
+                    constants[i] = in.readUnsignedShort();
+                    break;
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    skip(2);
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    skip(3);
+                    break;
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    skip(4);
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    skip(8);
+                    // Takes two entries
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+    }
+
+    private void readMethod(ScannedClass scannedClass) throws IOException {
+        int access = in.readUnsignedShort();
+        String name = getUtf8(in.readUnsignedShort());
+        String descriptor = getUtf8(in.readUnsignedShort());
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            String attributeName = getUtf8(in.readUnsignedShort());
+            int length = in.readInt();
+            if (!attributeName.equals("RuntimeVisibleAnnotations")) {
+                skip(length);
+                continue;
+            }
+            int annotationCount = in.readUnsignedShort();
+            for (int j = 0; j < annotationCount; j++) {
+                String type = getUtf8(in.readUnsignedShort());
+                if (type.equals(SUBSCRIBE_DESCRIPTOR)) {
+                    readSubscribe(scannedClass, access, name, descriptor);
+                } else {
+                    skipElementValuePairs();
+                }
+            }
+        }
+    }
+
+    /** Like SubscriberMethodFinder, ignores abstract, bridge and synthetic methods. */
+    private void readSubscribe(ScannedClass scannedClass, int access, String name, String descriptor)
+            throws IOException {
+        String threadMode = "POSTING";
+        int priority = 0;
+        boolean sticky = false;
+        int pairCount = in.readUnsignedShort();
+        for (int i = 0; i < pairCount; i++) {
+            String elementName = getUtf8(in.readUnsignedShort());
+            int tag = in.readUnsignedByte();
+            if (elementName.equals("threadMode") && tag == 'e') {
+                in.readUnsignedShort(); // enum type
+                threadMode = getUtf8(in.readUnsignedShort());
+            } else if (elementName.equals("priority") && tag == 'I') {
+                priority = (Integer) constants[in.readUnsignedShort()];
+            } else if (elementName.equals("sticky") && tag == 'Z') {
+                sticky = (Integer) constants[in.readUnsignedShort()] != 0;
+            } else {
+                skipElementValue(tag);
+            }
+        }
+        if ((access & (ScannedClass.ACC_ABSTRACT | ScannedClass.ACC_BRIDGE | ScannedClass.ACC_SYNTHETIC)) != 0) {
+            return;
+        }
+        String eventType = getSingleObjectParameter(descriptor);
+        if ((access & ScannedClass.ACC_PUBLIC) == 0 || (access & ScannedClass.ACC_STATIC) != 0 || eventType == null) {
+            scannedClass.hasIllegalSubscriberMethod = true;
+        } else {
+            scannedClass.subscriberMethods.add(
+                    new ScannedClass.Method(name, eventType, threadMode, priority, sticky, scannedClass));
+        }
+    }
+
+    /** Returns the binary name of the only parameter type if it is a class or interface, null otherwise. */
+    private static String getSingleObjectParameter(String descriptor) {
+        int end = descriptor.indexOf(')');
+        if (descriptor.charAt(1) != 'L' || descriptor.indexOf(';') != end - 1) {
+            return null;
+        }
+        return descriptor.substring(2, end - 1).replace('/', '.');
+    }
+
+    private void readInnerClasses(ScannedClass scannedClass) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            int innerIndex = in.readUnsignedShort();
+            int outerIndex = in.readUnsignedShort();
+            int innerNameIndex = in.readUnsignedShort();
+            int innerAccess = in.readUnsignedShort();
+            if (!getClassName(innerIndex).equals(scannedClass.name)) {
+                continue;
+            }
+            if (outerIndex == 0 || innerNameIndex == 0) {
+                scannedClass.localOrAnonymous = true;
+            } else {
+                scannedClass.outerName = getClassName(outerIndex);
+                scannedClass.simpleName = getUtf8(innerNameIndex);
+                scannedClass.access = innerAccess;
+            }
+        }
+    }
+
+    private void skipAttributes() throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            skip(2);
+            skip(in.readInt());
+        }
+    }
+
+    private void skipElementValuePairs() throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            skip(2);
+            skipElementValue(in.readUnsignedByte());
+        }
+    }
+
+    private void skipElementValue(int tag) throws IOException {
+        switch (tag) {
+            case 'e':
+                skip(4);
+                break;
+            case '@':
+                skip(2);
+                skipElementValuePairs();
+                break;
+            case '[':
+                int count = in.readUnsignedShort();
+                for (int i = 0; i < count; i++) {
+                    skipElementValue(in.readUnsignedByte());
+                }
+                break;
+            default:
+                // Constants and class literals
+                skip(2);
+        }
+    }
+
+    private String getUtf8(int index) throws IOException {
+        if (tags[index] != CONSTANT_UTF8) {
+            throw new IOException("Constant " + index + " is not a Utf8 constant");
+        }
+        return (String) constants[index];
+    }
+
+    private String getClassName(int index) throws IOException {
+        if (tags[index] != CONSTANT_CLASS) {
+            throw new IOException("Constant " + index + " is not a class constant");
+        }
+        return getUtf8((Integer) constants[index]).replace('/', '.');
+    }
+
+    private void skip(int count) throws IOException {
+        // skipBytes may skip less than requested, e.g. for streams of jar entries
+        while (count > 0) {
+            int skipped = in.skipBytes(count);
+            if (skipped == 0) {
+                // Throws EOFException at the end of the stream
+                in.readByte();
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus.indexscanner;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Builds a subscriber index for prebuilt classes, e.g. third party jars, which never went through the EventBus
+ * annotation processor. Class files are parsed without loading them; the index is written as Java source, to be
+ * compiled together with the app.
+ * <p/>
+ * Usage: IndexScanner &lt;index class name&gt; &lt;output source dir&gt; &lt;jar or class dir&gt;...
+ * <p/>
+ * Like the annotation processor, subscribers the index cannot reference (or with event types it cannot reference)
+ * are left out and will be found using reflection at runtime.
+ */
+public class IndexScanner {
+    /** Same prefixes as SubscriberMethodFinder.FindState.moveToSuperclass. */
+    private static final String[] PLATFORM_PREFIXES = {"java.", "javax.", "android.", "androidx."};
+
+    /** Sorted by name, so the generated source does not depend on the order of inputs. */
+    private final Map<String, ScannedClass> classes = new TreeMap<>();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: IndexScanner <index class name> <output source dir> <jar or class dir>...");
+            System.exit(1);
+        }
+        IndexScanner scanner = new IndexScanner();
+        for (int i = 2; i < args.length; i++) {
+            scanner.scan(new File(args[i]));
+        }
+        File sourceFile = scanner.writeIndex(args[0], new File(args[1]));
+        System.out.println("Wrote " + sourceFile);
+    }
+
+    /** Scans a jar file or a directory of class files. */
+    public void scan(File file) throws IOException {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    scan(child);
+                }
+            }
+        } else if (isClassFile(file.getName())) {
+            try (InputStream in = new FileInputStream(file)) {
+                addClass(ClassFileParser.parse(in));
+            }
+        } else if (file.getName().endsWith(".jar")) {
+            try (ZipFile zipFile = new ZipFile(file)) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    // Skips multi release versions under META-INF
+                    if (!entry.isDirectory() && isClassFile(entry.getName()) &&
+                            !entry.getName().startsWith("META-INF/")) {
+                        try (InputStream in = zipFile.getInputStream(entry)) {
+                            addClass(ClassFileParser.parse(in));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isClassFile(String name) {
+        return name.endsWith(".class") && !name.endsWith("module-info.class") && !name.endsWith("package-info.class");
+    }
+
+    private void addClass(ScannedClass scannedClass) {
+        // First one wins, like on a class path
+        if (!classes.containsKey(scannedClass.name)) {
+            classes.put(scannedClass.name, scannedClass);
+        }
+    }
+
+    /** Writes the index source file below the given directory, returns the written file. */
+    public File writeIndex(String index, File outputDir) throws IOException {
+        int period = index.lastIndexOf('.');
+        String myPackage = period > 0 ? index.substring(0, period) : "";
+        String clazz = index.substring(period + 1);
+
+        List<ScannedClass> subscriberClasses = new ArrayList<>();
+        List<List<ScannedClass.Method>> subscriberMethods = new ArrayList<>();
+        List<Boolean> flattened = new ArrayList<>();
+        for (ScannedClass scannedClass : classes.values()) {
+            if (scannedClass.subscriberMethods.isEmpty() || !isIndexable(scannedClass, myPackage)) {
+                continue;
+            }
+            List<ScannedClass.Method> methods = getFlattenedSubscriberMethods(scannedClass, myPackage);
+            subscriberClasses.add(scannedClass);
+            subscriberMethods.add(methods != null ? methods : scannedClass.subscriberMethods);
+            flattened.add(methods != null);
+        }
+
+        File packageDir = myPackage.isEmpty() ? outputDir : new File(outputDir, myPackage.replace('.', '/'));
+        if (!packageDir.isDirectory() && !packageDir.mkdirs()) {
+            throw new IOException("Could not create " + packageDir);
+        }
+        File sourceFile = new File(packageDir, clazz + ".java");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(sourceFile), "UTF-8"))) {
+            if (!myPackage.isEmpty()) {
+                writer.write("package " + myPackage + ";\n\n");
+            }
+            writer.write("import org.greenrobot.eventbus.meta.EnumerableSubscriberInfoIndex;\n");
+            writer.write("import org.greenrobot.eventbus.meta.SimpleSubscriberInfo;\n");
+            writer.write("import org.greenrobot.eventbus.meta.SubscriberInfo;\n");
+            writer.write("import org.greenrobot.eventbus.meta.SubscriberMethodInfo;\n");
+            writer.write("import org.greenrobot.eventbus.ThreadMode;\n\n");
+            writer.write("import java.util.concurrent.atomic.AtomicReferenceArray;\n\n");
+            writer.write("/** This class is generated by the EventBus index scanner, do not edit. */\n");
+            writer.write("public class " + clazz + " implements EnumerableSubscriberInfoIndex {\n");
+            writer.write("    private static final AtomicReferenceArray<SubscriberInfo> INFOS =\n");
+            writer.write("            new AtomicReferenceArray<SubscriberInfo>(" + subscriberClasses.size() + ");\n\n");
+            writer.write("    @Override\n");
+            writer.write("    public SubscriberInfo getSubscriberInfo(Class<?> subscriberClass) {\n");
+            writer.write("        int index;\n");
+            writer.write("        switch (subscriberClass.getName()) {\n");
+            for (int i = 0; i < subscriberClasses.size(); i++) {
+                writer.write("            case \"" + subscriberClasses.get(i).name + "\":\n");
+                writer.write("                index = " + i + ";\n");
+                writer.write("                break;\n");
+            }
+            writer.write("            default:\n");
+            writer.write("                return null;\n");
+            writer.write("        }\n");
+            writer.write("        SubscriberInfo info = INFOS.get(index);\n");
+            writer.write("        if (info == null) {\n");
+            writer.write("            // Racing threads may create equal infos, only the first one is kept\n");
+            writer.write("            INFOS.compareAndSet(index, null, createSubscriberInfo(index));\n");
+            writer.write("            info = INFOS.get(index);\n");
+            writer.write("        }\n");
+            writer.write("        // A class of the same name from another class loader is not indexed\n");
+            writer.write("        return info.getSubscriberClass() == subscriberClass ? info : null;\n");
+            writer.write("    }\n\n");
+            writer.write("    @Override\n");
+            writer.write("    public Class<?>[] getSubscriberClasses() {\n");
+            writer.write("        return new Class<?>[] {\n");
+            for (ScannedClass subscriberClass : subscriberClasses) {
+                writer.write("            " + getSourceName(subscriberClass.name) + ".class,\n");
+            }
+            writer.write("        };\n");
+            writer.write("    }\n\n");
+            writer.write("    @Override\n");
+            writer.write("    public String[] getSubscriberClassNames() {\n");
+            writer.write("        return new String[] {\n");
+            for (ScannedClass subscriberClass : subscriberClasses) {
+                writer.write("            \"" + subscriberClass.name + "\",\n");
+            }
+            writer.write("        };\n");
+            writer.write("    }\n\n");
+            writer.write("    private static SubscriberInfo createSubscriberInfo(int index) {\n");
+            writer.write("        switch (index) {\n");
+            for (int i = 0; i < subscriberClasses.size(); i++) {
+                ScannedClass subscriberClass = subscriberClasses.get(i);
+                writer.write("            case " + i + ":\n");
+                if (flattened.get(i)) {
+                    writer.write("                return SimpleSubscriberInfo.flattened(" +
+                            getSourceName(subscriberClass.name) + ".class, new SubscriberMethodInfo[] {\n");
+                } else {
+                    writer.write("                return new SimpleSubscriberInfo(" +
+                            getSourceName(subscriberClass.name) + ".class, true, new SubscriberMethodInfo[] {\n");
+                }
+                for (ScannedClass.Method method : subscriberMethods.get(i)) {
+                    writer.write("                        new SubscriberMethodInfo(\"" + method.name + "\", ");
+                    if (method.declaringClass != subscriberClass) {
+                        writer.write(getSourceName(method.declaringClass.name) + ".class, ");
+                    }
+                    writer.write(getSourceName(method.eventType) + ".class, ThreadMode." + method.threadMode + ", " +
+                            method.priority + ", " + method.sticky + "),\n");
+                }
+                writer.write("                });\n");
+            }
+            writer.write("            default:\n");
+            writer.write("                throw new IllegalArgumentException(\"Unknown subscriber \" + index);\n");
+            writer.write("        }\n");
+            writer.write("    }\n");
+            writer.write("}\n");
+        }
+        return sourceFile;
+    }
+
+    /**
+     * The subscriber methods of the class and its superclasses, subclass methods first and overridden methods only
+     * once, like the annotation processor writes them. Returns null if a superclass was not scanned or its methods
+     * cannot be referenced by the index.
+     */
+    private List<ScannedClass.Method> getFlattenedSubscriberMethods(ScannedClass subscriberClass, String myPackage) {
+        List<ScannedClass.Method> flattened = new ArrayList<>();
+        Set<String> methodKeys = new HashSet<>();
+        ScannedClass clazz = subscriberClass;
+        while (clazz != null) {
+            boolean hasSubscriberMethods = !clazz.subscriberMethods.isEmpty() || clazz.hasIllegalSubscriberMethod;
+            if (clazz != subscriberClass && hasSubscriberMethods && !isIndexable(clazz, myPackage)) {
+                return null;
+            }
+            for (ScannedClass.Method method : clazz.subscriberMethods) {
+                if (methodKeys.add(method.name + ">" + method.eventType)) {
+                    flattened.add(method);
+                }
+            }
+            String superName = clazz.superName;
+            if (superName == null || isPlatformType(superName)) {
+                break;
+            }
+            clazz = classes.get(superName);
+            if (clazz == null) {
+                return null;
+            }
+        }
+        return flattened;
+    }
+
+    /** If the index can reference the class and the event types of its subscriber methods. */
+    private boolean isIndexable(ScannedClass scannedClass, String myPackage) {
+        if (scannedClass.hasIllegalSubscriberMethod || !isVisible(scannedClass.name, myPackage)) {
+            return false;
+        }
+        for (ScannedClass.Method method : scannedClass.subscriberMethods) {
+            if (!isVisible(method.eventType, myPackage)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Classes which were not scanned are only considered visible if they are top level platform classes; we cannot
+     * tell for others, and a wrong guess would break compiling the index.
+     */
+    private boolean isVisible(String className, String myPackage) {
+        ScannedClass scannedClass = classes.get(className);
+        if (scannedClass == null) {
+            return isPlatformType(className) && className.indexOf('$') == -1;
+        }
+        while (scannedClass != null) {
+            if (scannedClass.localOrAnonymous) {
+                return false;
+            }
+            int access = scannedClass.access;
+            if ((access & (ScannedClass.ACC_PRIVATE | ScannedClass.ACC_PROTECTED)) != 0) {
+                return false;
+            } else if ((access & ScannedClass.ACC_PUBLIC) == 0 && !scannedClass.getPackageName().equals(myPackage)) {
+                return false;
+            }
+            if (scannedClass.outerName == null) {
+                return true;
+            }
+            scannedClass = classes.get(scannedClass.outerName);
+        }
+        // Outer class was not scanned
+        return false;
+    }
+
+    /** Fully qualified name as used in source code, e.g. for a nested class. Expects the class to be visible. */
+    private String getSourceName(String className) {
+        ScannedClass scannedClass = classes.get(className);
+        if (scannedClass == null || scannedClass.outerName == null) {
+            return className;
+        }
+        return getSourceName(scannedClass.outerName) + "." + scannedClass.simpleName;
+    }
+
+    private static boolean isPlatformType(String className) {
+        for (String prefix : PLATFORM_PREFIXES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus.indexscanner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** What the index scanner needs to know about a class file; class names are binary names (Class.getName()). */
+final class ScannedClass {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_PROTECTED = 0x0004;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_BRIDGE = 0x0040;
+    static final int ACC_ABSTRACT = 0x0400;
+    static final int ACC_SYNTHETIC = 0x1000;
+
+    final String name;
+    /** Null for java.lang.Object. */
+    final String superName;
+    /** For nested classes, the access flags of the InnerClasses attribute, which include private and protected. */
+    int access;
+    /** Set for member classes only. */
+    String outerName;
+    String simpleName;
+    /** Anonymous and local classes cannot be referenced by the index. */
+    boolean localOrAnonymous;
+    final List<Method> subscriberMethods = new ArrayList<>();
+    /** A @Subscribe method EventBus would not accept (or reject only with strict method verification). */
+    boolean hasIllegalSubscriberMethod;
+
+    ScannedClass(String name, String superName, int access) {
+        this.name = name;
+        this.superName = superName;
+        this.access = access;
+        int period = name.lastIndexOf('.');
+        simpleName = name.substring(period + 1);
+    }
+
+    String getPackageName() {
+        int period = name.lastIndexOf('.');
+        return period > 0 ? name.substring(0, period) : "";
+    }
+
+    /** A @Subscribe method with the values of its annotation. */
+    static final class Method {
+        final String name;
+        final String eventType;
+        final String threadMode;
+        final int priority;
+        final boolean sticky;
+        final ScannedClass declaringClass;
+
+        Method(String name, String eventType, String threadMode, int priority, boolean sticky,
+               ScannedClass declaringClass) {
+            this.name = name;
+            this.eventType = eventType;
+            this.threadMode = threadMode;
+            this.priority = priority;
+            this.sticky = sticky;
+            this.declaringClass = declaringClass;
+        }
+    }
+}
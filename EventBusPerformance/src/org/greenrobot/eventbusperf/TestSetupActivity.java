@@ -38,7 +38,9 @@ public class TestSetupActivity extends Activity {
     static final Class[] TEST_CLASSES_EVENTBUS = {PerfTestEventBus.Post.class,//
             PerfTestEventBus.RegisterOneByOne.class,//
             PerfTestEventBus.RegisterAll.class, //
-            PerfTestEventBus.RegisterFirstTime.class};
+            PerfTestEventBus.RegisterFirstTime.class, //
+            PerfTestEventBus.RegisterChurn.class, //
+            PerfTestEventBus.PostMultiThreaded.class};
 
     static final Class[] TEST_CLASSES_OTTO = {PerfTestOtto.Post.class,//
             PerfTestOtto.RegisterOneByOne.class,//
@@ -54,7 +56,8 @@ public class TestSetupActivity extends Activity {
         spinnerRun.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
 
             public void onItemSelected(AdapterView<?> adapter, View v, int pos, long lng) {
-                int eventsVisibility = pos == 0 ? View.VISIBLE : View.GONE;
+                // Post tests
+                int eventsVisibility = pos == 0 || pos == 5 ? View.VISIBLE : View.GONE;
                 findViewById(R.id.relativeLayoutForEvents).setVisibility(eventsVisibility);
                 findViewById(R.id.spinnerThread).setVisibility(eventsVisibility);
             }
@@ -110,7 +113,8 @@ public class TestSetupActivity extends Activity {
         if (checkBoxEventBus.isChecked()) {
             testClasses.add(TEST_CLASSES_EVENTBUS[testPos]);
         }
-        if (checkBoxOtto.isChecked()) {
+        // Not all tests have an Otto counterpart
+        if (checkBoxOtto.isChecked() && testPos < TEST_CLASSES_OTTO.length) {
             testClasses.add(TEST_CLASSES_OTTO[testPos]);
         }
         if (checkBoxBroadcast.isChecked()) {
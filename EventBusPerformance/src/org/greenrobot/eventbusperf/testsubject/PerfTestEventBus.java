@@ -25,6 +25,7 @@ import org.greenrobot.eventbus.ThreadMode;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
 
 import org.greenrobot.eventbusperf.MyEventBusIndex;
 import org.greenrobot.eventbusperf.Test;
@@ -125,6 +126,75 @@ public abstract class PerfTestEventBus extends Test {
 
     }
 
+    /**
+     * Posts from as many threads as there are CPU cores (at least 2) at once. Shows contention in the posting path,
+     * e.g. in the event type hierarchy lookup shared by all threads.
+     */
+    public static class PostMultiThreaded extends PerfTestEventBus {
+        private final int threadCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        public PostMultiThreaded(Context context, TestParams params) {
+            super(context, params);
+        }
+
+        @Override
+        public void prepareTest() {
+            super.prepareTest();
+            super.registerSubscribers();
+        }
+
+        public void runTest() {
+            final int eventsPerThread = super.eventCount / threadCount;
+            final CountDownLatch startLatch = new CountDownLatch(1);
+            final CountDownLatch doneLatch = new CountDownLatch(threadCount);
+            for (int t = 0; t < threadCount; t++) {
+                new Thread("PostMultiThreaded-" + t) {
+                    @Override
+                    public void run() {
+                        TestEvent event = new TestEvent();
+                        try {
+                            startLatch.await();
+                            for (int i = 0; i < eventsPerThread && !canceled; i++) {
+                                PostMultiThreaded.super.eventBus.post(event);
+                            }
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        } finally {
+                            doneLatch.countDown();
+                        }
+                    }
+                }.start();
+            }
+            long timeStart = System.nanoTime();
+            startLatch.countDown();
+            try {
+                doneLatch.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            long timeAfterPosting = System.nanoTime();
+            int expectedEventCount = eventsPerThread * threadCount * params.getSubscriberCount();
+            if (!canceled) {
+                waitForReceivedEventCount(expectedEventCount);
+            }
+            long timeAllReceived = System.nanoTime();
+
+            primaryResultMicros = (timeAfterPosting - timeStart) / 1000;
+            primaryResultCount = expectedEventCount;
+            long deliveredMicros = (timeAllReceived - timeStart) / 1000;
+            int deliveryRate = (int) (primaryResultCount / (deliveredMicros / 1000000d));
+            otherTestResults = "Threads: " + threadCount + "<br/>" + //
+                    "Post and delivery time: " + deliveredMicros + " micros<br/>" + //
+                    "Post and delivery rate: " + deliveryRate + "/s";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "EventBus Post Events, " + threadCount + " threads, " + params.getThreadMode()
+                    + getDisplayModifier(params);
+        }
+    }
+
     public static class RegisterAll extends PerfTestEventBus {
         public RegisterAll(Context context, TestParams params) {
             super(context, params);
@@ -207,6 +277,42 @@ public abstract class PerfTestEventBus extends Test {
 
     }
 
+    /** Brings all subscribers up and down again, one by one compared to registerAll/unregisterAll. */
+    public static class RegisterChurn extends PerfTestEventBus {
+        public RegisterChurn(Context context, TestParams params) {
+            super(context, params);
+        }
+
+        public void runTest() {
+            super.registerUnregisterOneSubscribers();
+            long timeStart = System.nanoTime();
+            for (Object subscriber : super.subscribers) {
+                super.eventBus.register(subscriber);
+            }
+            for (Object subscriber : super.subscribers) {
+                super.eventBus.unregister(subscriber);
+            }
+            long timeOneByOne = System.nanoTime() - timeStart;
+            if (canceled) {
+                return;
+            }
+
+            timeStart = System.nanoTime();
+            super.eventBus.registerAll(super.subscribers);
+            super.eventBus.unregisterAll(super.subscribers);
+            long timeBulk = System.nanoTime() - timeStart;
+
+            primaryResultMicros = timeBulk / 1000;
+            primaryResultCount = params.getSubscriberCount();
+            otherTestResults = "One by one: " + timeOneByOne / 1000 + " micros";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "EventBus Register/unregister all" + getDisplayModifier(params);
+        }
+    }
+
     public class SubscribeClassEventBusMain {
         @Subscribe(threadMode = ThreadMode.MAIN)
         public void onEventMainThread(TestEvent event) {
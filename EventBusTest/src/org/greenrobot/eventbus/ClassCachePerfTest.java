@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.greenrobot.eventbus;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compares lookup throughput of {@link ClassCache} with the maps previously used for the subscriber method cache
+ * (ConcurrentHashMap) and the event type cache (synchronized HashMap). Ignore this test.
+ */
+public class ClassCachePerfTest /* extends TestCase */ {
+
+    static final int COUNT = 10000000;
+    static final Class CLAZZ = ClassCachePerfTest.class;
+
+    public void testConcurrentHashMap() {
+        Map<Class, Class> map = new ConcurrentHashMap<Class, Class>();
+        map.put(CLAZZ, CLAZZ);
+        long start = System.nanoTime();
+        for (int i = 0; i < COUNT; i++) {
+            Class value = map.get(CLAZZ);
+        }
+        log("ConcurrentHashMap", start);
+    }
+
+    public void testSynchronizedHashMap() {
+        Map<Class, Class> map = new HashMap<Class, Class>();
+        map.put(CLAZZ, CLAZZ);
+        long start = System.nanoTime();
+        for (int i = 0; i < COUNT; i++) {
+            synchronized (map) {
+                Class value = map.get(CLAZZ);
+            }
+        }
+        log("Synchronized HashMap", start);
+    }
+
+    public void testClassCache() {
+        ClassCache<Class> cache = ClassCache.create();
+        cache.put(CLAZZ, CLAZZ);
+        long start = System.nanoTime();
+        for (int i = 0; i < COUNT; i++) {
+            Class value = cache.get(CLAZZ);
+        }
+        log(cache.getClass().getSimpleName(), start);
+    }
+
+    private void log(String name, long start) {
+        long millis = (System.nanoTime() - start) / 1000000;
+        System.out.println(name + ": " + COUNT + " lookups in " + millis + " ms");
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.greenrobot.eventbus;
+
+import org.greenrobot.eventbus.meta.SimpleSubscriberInfo;
+import org.greenrobot.eventbus.meta.SubscriberInfo;
+import org.greenrobot.eventbus.meta.SubscriberInfoIndex;
+import org.greenrobot.eventbus.meta.SubscriberMethodInfo;
+
+/**
+ * Cold registrations via an index: compares resolving the subscriber methods on every lookup (as
+ * SimpleSubscriberInfo did before memoizing, simulated by a fresh info object per lookup) with the memoized
+ * resolution. Ignore this test.
+ */
+public class SubscriberInfoPerfTest /* extends TestCase */ {
+
+    static final int COUNT = 100000;
+    static final SubscriberMethodInfo[] METHOD_INFOS = {
+            new SubscriberMethodInfo("onEvent", String.class),
+            new SubscriberMethodInfo("onEvent", Integer.class, ThreadMode.BACKGROUND),
+            new SubscriberMethodInfo("onEventMain", String.class, ThreadMode.MAIN, 1, true)
+    };
+
+    public void testResolveEachTime() {
+        long start = System.nanoTime();
+        for (int i = 0; i < COUNT; i++) {
+            SubscriberInfo info = new SimpleSubscriberInfo(Subscriber.class, true, METHOD_INFOS);
+            info.getSubscriberMethods();
+        }
+        log("Resolve each time", start);
+    }
+
+    public void testMemoized() {
+        SubscriberInfo info = new SimpleSubscriberInfo(Subscriber.class, true, METHOD_INFOS);
+        long start = System.nanoTime();
+        for (int i = 0; i < COUNT; i++) {
+            info.getSubscriberMethods();
+        }
+        log("Memoized", start);
+    }
+
+    public void testColdRegister() {
+        final SubscriberInfo info = new SimpleSubscriberInfo(Subscriber.class, true, METHOD_INFOS);
+        EventBus eventBus = EventBus.builder().addIndex(new SubscriberInfoIndex() {
+            @Override
+            public SubscriberInfo getSubscriberInfo(Class<?> subscriberClass) {
+                return subscriberClass == Subscriber.class ? info : null;
+            }
+        }).build();
+        Subscriber subscriber = new Subscriber();
+        long start = System.nanoTime();
+        for (int i = 0; i < COUNT; i++) {
+            EventBus.clearCaches();
+            eventBus.register(subscriber);
+            eventBus.unregister(subscriber);
+        }
+        log("Cold register/unregister", start);
+    }
+
+    private void log(String name, long start) {
+        long micros = (System.nanoTime() - start) / 1000;
+        System.out.println(name + ": " + COUNT + " iterations in " + micros + " micros");
+    }
+
+    public static class Subscriber {
+        public void onEvent(String event) {
+        }
+
+        public void onEvent(Integer event) {
+        }
+
+        public void onEventMain(String event) {
+        }
+    }
+
+}
@@ -17,6 +17,10 @@ package org.greenrobot.eventbus;
 
 import org.junit.Test;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -87,6 +91,29 @@ public class EventBusBasicTest extends AbstractEventBusTest {
         }
     }
 
+    @Test
+    public void testUnregisteredSubscriberNotRetained() throws InterruptedException {
+        // Enough other subscribers, so the list is not compacted when removing
+        List<StringEventSubscriber> others = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            StringEventSubscriber other = new StringEventSubscriber();
+            others.add(other);
+            eventBus.register(other);
+        }
+        StringEventSubscriber subscriber = new StringEventSubscriber();
+        WeakReference<StringEventSubscriber> subscriberRef = new WeakReference<>(subscriber);
+        eventBus.register(subscriber);
+        eventBus.unregister(subscriber);
+        subscriber = null;
+        for (int i = 0; i < 100 && subscriberRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(subscriberRef.get());
+        eventBus.post("Hello");
+        assertEquals("Hello", others.get(0).lastStringEvent);
+    }
+
     @Test
     public void testRegisterTwice() {
         eventBus.register(this);
@@ -98,6 +125,21 @@ public class EventBusBasicTest extends AbstractEventBusTest {
         }
     }
 
+    @Test
+    public void testRegisterWithoutSubscriberMethods() {
+        try {
+            eventBus.register(new IntTestEvent(42));
+            fail("Did not throw");
+        } catch (EventBusException expected) {
+            // OK
+        }
+        // The failed lookup must not leave this thread's find state dirty
+        StringEventSubscriber subscriber = new StringEventSubscriber();
+        eventBus.register(subscriber);
+        eventBus.post("Hello");
+        assertEquals("Hello", subscriber.lastStringEvent);
+    }
+
     @Test
     public void testIsRegistered() {
         assertFalse(eventBus.isRegistered(this));
@@ -107,6 +149,47 @@ public class EventBusBasicTest extends AbstractEventBusTest {
         assertFalse(eventBus.isRegistered(this));
     }
 
+    @Test
+    public void testUnregisterWithRegistration() {
+        Registration registration = eventBus.register(this);
+        assertTrue(registration.isRegistered());
+        registration.unregister();
+        assertFalse(registration.isRegistered());
+        assertFalse(eventBus.isRegistered(this));
+        eventBus.post("Hello");
+        assertNull(lastStringEvent);
+
+        // Unregistering again is a no-op, also for a stale handle after registering again
+        registration.unregister();
+        Registration registration2 = eventBus.register(this);
+        registration.unregister();
+        assertTrue(registration2.isRegistered());
+        eventBus.post("Hello");
+        assertEquals("Hello", lastStringEvent);
+    }
+
+    @Test
+    public void testUnregisterManyKeepsOrder() {
+        List<StringEventSubscriber> subscribers = new ArrayList<>();
+        List<Registration> registrations = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            StringEventSubscriber subscriber = new StringEventSubscriber();
+            subscribers.add(subscriber);
+            registrations.add(eventBus.register(subscriber));
+        }
+        // Unregister every subscriber but the ones at multiples of 10, compacting the list on the way
+        for (int i = 0; i < 100; i++) {
+            if (i % 10 != 0) {
+                registrations.get(i).unregister();
+            }
+        }
+        eventBus.post("Hello");
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 10 == 0 ? "Hello" : null, subscribers.get(i).lastStringEvent);
+        }
+        assertTrue(eventBus.hasSubscriberForEvent(String.class));
+    }
+
     @Test
     public void testPostWithTwoSubscriber() {
         EventBusBasicTest test2 = new EventBusBasicTest();
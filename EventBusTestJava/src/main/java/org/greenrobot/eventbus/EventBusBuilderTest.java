@@ -18,6 +18,9 @@ package org.greenrobot.eventbus;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
@@ -79,6 +82,123 @@ public class EventBusBuilderTest extends AbstractEventBusTest {
         eventBus.post("Foo");
     }
 
+    @Test
+    public void testInvalidKeyedStickyLimits() {
+        assertInvalid(new Runnable() {
+            @Override
+            public void run() {
+                EventBus.builder().maxStickyKeys(null, 10);
+            }
+        });
+        assertInvalid(new Runnable() {
+            @Override
+            public void run() {
+                EventBus.builder().maxStickyKeys(String.class, 0);
+            }
+        });
+        assertInvalid(new Runnable() {
+            @Override
+            public void run() {
+                EventBus.builder().maxStickyWeight(String.class, -1, null);
+            }
+        });
+        assertInvalid(new Runnable() {
+            @Override
+            public void run() {
+                EventBus.builder().maxStickyWeight(String.class, 10, null);
+            }
+        });
+    }
+
+    @Test
+    public void testInvalidStickyPersistence() {
+        final StickyEventCodec codec = new StickyEventCodec() {
+            @Override
+            public byte[] encode(Object event) {
+                return new byte[0];
+            }
+
+            @Override
+            public Object decode(Class<?> eventType, byte[] data) {
+                return null;
+            }
+        };
+        assertInvalid(new Runnable() {
+            @Override
+            public void run() {
+                EventBus.builder().stickyPersistence(null, codec);
+            }
+        });
+        assertInvalid(new Runnable() {
+            @Override
+            public void run() {
+                EventBus.builder().stickyPersistence(new File("sticky"), null);
+            }
+        });
+    }
+
+    @Test
+    public void testInvalidReplay() {
+        assertInvalid(new Runnable() {
+            @Override
+            public void run() {
+                EventBus.builder().replay(null, 10);
+            }
+        });
+        assertInvalid(new Runnable() {
+            @Override
+            public void run() {
+                EventBus.builder().replay(String.class, 0);
+            }
+        });
+        assertInvalid(new Runnable() {
+            @Override
+            public void run() {
+                EventBus.builder().replay(String.class, 10, -1, TimeUnit.SECONDS);
+            }
+        });
+    }
+
+    @Test
+    public void testInvalidEventInheritanceType() {
+        assertInvalid(new Runnable() {
+            @Override
+            public void run() {
+                EventBus.builder().eventInheritance(null, false);
+            }
+        });
+    }
+
+    @Test
+    public void testInvalidSlowSubscriberWatchdog() {
+        final SlowSubscriberListener listener = new SlowSubscriberListener() {
+            @Override
+            public void onSlowSubscriber(SlowSubscriberReport report) {
+            }
+        };
+        assertInvalid(new Runnable() {
+            @Override
+            public void run() {
+                EventBus.builder().slowSubscriberWatchdog(0, TimeUnit.MILLISECONDS, false, listener);
+            }
+        });
+        assertInvalid(new Runnable() {
+            @Override
+            public void run() {
+                EventBus.builder().slowSubscriberWatchdog(100, TimeUnit.MILLISECONDS, false, null);
+            }
+        });
+    }
+
+    private void assertInvalid(Runnable configuration) {
+        try {
+            configuration.run();
+            fail("Should have thrown");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
     public class SubscriberExceptionEventTracker {
         @Subscribe
         public void onEvent(SubscriberExceptionEvent event) {
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.greenrobot.eventbus.meta.SubscriberInfoIndex;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the class caches of EventBus do not keep classes of other class loaders (e.g. plugins) alive, nor
+ * the EventBus itself.
+ */
+public class EventBusClassUnloadingTest extends AbstractEventBusTest {
+
+    @Test
+    public void testClassLoaderIsCollected() throws Exception {
+        // Without ClassValue (Android) classes are not unloaded anyway
+        Assume.assumeTrue(ClassCache.create() instanceof ClassCache.ClassValueCache);
+        WeakReference<ClassLoader> loaderRef = registerAndPostIsolated(EventBus.builder());
+        assertCollected(loaderRef);
+    }
+
+    @Test
+    public void testClassLoaderIsCollectedWithIndex() throws Exception {
+        Assume.assumeTrue(ClassCache.create() instanceof ClassCache.ClassValueCache);
+        WeakReference<ClassLoader> loaderRef = registerAndPostIsolated(EventBus.builder()
+                .addIndex(new EventBusJavaTestsIndex()));
+        assertCollected(loaderRef);
+    }
+
+    @Test
+    public void testClassLoaderIsCollectedWhileIndexIsAlive() throws Exception {
+        Assume.assumeTrue(ClassCache.create() instanceof ClassCache.ClassValueCache);
+        List<SubscriberInfoIndex> indexes = new ArrayList<>();
+        indexes.add(new EventBusJavaTestsIndex());
+        MergedSubscriberInfoIndex mergedIndex = new MergedSubscriberInfoIndex(indexes);
+        WeakReference<ClassLoader> loaderRef = lookUpIsolated(mergedIndex);
+        assertCollected(loaderRef);
+        // The index, which cached the miss for the isolated copy, is still alive
+        assertNotNull(mergedIndex.getSubscriberInfo(IsolatedSubscriber.class));
+    }
+
+    @Test
+    public void testClassLoaderIsCollectedWhileEventBusIsAlive() throws Exception {
+        Assume.assumeTrue(ClassCache.create() instanceof ClassCache.ClassValueCache);
+        EventBus eventBus = EventBus.builder().logNoSubscriberMessages(false).build();
+        // Events are dispatched using cached plans, also for events without subscribers
+        eventBus.register(new ObjectSubscriber());
+        WeakReference<ClassLoader> loaderRef = postIsolated(eventBus);
+        assertCollected(loaderRef);
+        eventBus.post("Hello");
+    }
+
+    @Test
+    public void testClassLoaderIsCollectedAfterRemovingStickyEvent() throws Exception {
+        Assume.assumeTrue(ClassCache.create() instanceof ClassCache.ClassValueCache);
+        EventBus eventBus = EventBus.builder().logNoSubscriberMessages(false).build();
+        WeakReference<ClassLoader> loaderRef = postAndRemoveStickyIsolated(eventBus);
+        assertCollected(loaderRef);
+        assertTrue(eventBus.getStickyEventVersion(String.class) > 0);
+    }
+
+    private WeakReference<ClassLoader> postAndRemoveStickyIsolated(EventBus eventBus) throws Exception {
+        ClassLoader loader = new IsolatingClassLoader();
+        Class<?> eventClass = loader.loadClass(IsolatedEvent.class.getName());
+        eventBus.postSticky(eventClass.newInstance());
+        assertNotNull(eventBus.removeStickyEvent(eventClass));
+        return new WeakReference<>(loader);
+    }
+
+    @Test
+    public void testEventBusIsCollected() throws Exception {
+        // A subscriber referencing its EventBus must not keep it alive through the cached dispatch plans
+        WeakReference<EventBus> eventBusRef = registerAndPostWithEventBusReference();
+        assertCollected(eventBusRef);
+    }
+
+    private WeakReference<EventBus> registerAndPostWithEventBusReference() {
+        EventBus eventBus = EventBus.builder().build();
+        EventBusReferencingSubscriber subscriber = new EventBusReferencingSubscriber(eventBus);
+        eventBus.register(subscriber);
+        eventBus.post("Hello");
+        assertEquals(1, subscriber.eventCount);
+        return new WeakReference<>(eventBus);
+    }
+
+    private WeakReference<ClassLoader> postIsolated(EventBus eventBus) throws Exception {
+        ClassLoader loader = new IsolatingClassLoader();
+        Class<?> eventClass = loader.loadClass(IsolatedEvent.class.getName());
+        assertNotSame(IsolatedEvent.class, eventClass);
+        eventBus.post(eventClass.newInstance());
+        assertTrue(eventBus.hasSubscriberForEvent(eventClass));
+        return new WeakReference<>(loader);
+    }
+
+    private WeakReference<ClassLoader> lookUpIsolated(MergedSubscriberInfoIndex mergedIndex) throws Exception {
+        ClassLoader loader = new IsolatingClassLoader();
+        Class<?> subscriberClass = loader.loadClass(IsolatedSubscriber.class.getName());
+        assertNull(mergedIndex.getSubscriberInfo(subscriberClass));
+        return new WeakReference<>(loader);
+    }
+
+    private static void assertCollected(WeakReference<?> reference) throws InterruptedException {
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("Not garbage collected", reference.get());
+    }
+
+    private WeakReference<ClassLoader> registerAndPostIsolated(EventBusBuilder builder) throws Exception {
+        ClassLoader loader = new IsolatingClassLoader();
+        Class<?> subscriberClass = loader.loadClass(IsolatedSubscriber.class.getName());
+        Class<?> eventClass = loader.loadClass(IsolatedEvent.class.getName());
+        assertNotSame(IsolatedSubscriber.class, subscriberClass);
+
+        EventBus eventBus = builder.build();
+        Object subscriber = subscriberClass.newInstance();
+        eventBus.register(subscriber);
+        eventBus.post(eventClass.newInstance());
+        eventBus.unregister(subscriber);
+        assertEquals(1, subscriberClass.getField("eventCount").getInt(subscriber));
+        return new WeakReference<>(loader);
+    }
+
+    public static class ObjectSubscriber {
+        @Subscribe
+        public void onEvent(Object event) {
+        }
+    }
+
+    public static class EventBusReferencingSubscriber {
+        private final EventBus eventBus;
+        int eventCount;
+
+        EventBusReferencingSubscriber(EventBus eventBus) {
+            this.eventBus = eventBus;
+        }
+
+        @Subscribe
+        public void onEvent(String event) {
+            assertNotNull(eventBus);
+            eventCount++;
+        }
+    }
+
+    public static class IsolatedEvent {
+    }
+
+    public static class IsolatedSubscriber {
+        public int eventCount;
+
+        @Subscribe
+        public void onEvent(IsolatedEvent event) {
+            eventCount++;
+        }
+    }
+
+    /** Defines its own copies of the isolated classes, everything else is loaded by the parent. */
+    static class IsolatingClassLoader extends ClassLoader {
+        IsolatingClassLoader() {
+            super(EventBusClassUnloadingTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(IsolatedSubscriber.class.getName()) && !name.equals(IsolatedEvent.class.getName())) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (this) {
+                Class<?> clazz = findLoadedClass(name);
+                if (clazz == null) {
+                    byte[] bytes = readClassFile(name);
+                    clazz = defineClass(name, bytes, 0, bytes.length);
+                }
+                return clazz;
+            }
+        }
+
+        private byte[] readClassFile(String name) throws ClassNotFoundException {
+            InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+            if (in == null) {
+                throw new ClassNotFoundException(name);
+            }
+            try {
+                try {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                    return out.toByteArray();
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
+}
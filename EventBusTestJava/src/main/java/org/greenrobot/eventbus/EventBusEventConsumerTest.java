@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EventBusEventConsumerTest extends AbstractEventBusTest {
+
+    private final EventConsumer<Object> trackingConsumer = new EventConsumer<Object>() {
+        @Override
+        public void onEvent(Object event) {
+            trackEvent(event);
+        }
+    };
+
+    @Test
+    public void testSubscribeAndPost() {
+        Registration registration = eventBus.subscribe(String.class, trackingConsumer);
+        assertTrue(registration.isRegistered());
+        assertTrue(eventBus.hasSubscriberForEvent(String.class));
+        // Consumers are not subscriber objects
+        assertFalse(eventBus.isRegistered(trackingConsumer));
+
+        eventBus.post("Hello");
+        eventBus.post(42);
+        assertEventCount(1);
+        assertEquals("Hello", lastEvent);
+
+        registration.unregister();
+        assertFalse(registration.isRegistered());
+        eventBus.post("Hello");
+        assertEventCount(1);
+    }
+
+    @Test
+    public void testSubscribeSameConsumerTwice() {
+        Registration registration1 = eventBus.subscribe(String.class, trackingConsumer);
+        eventBus.subscribe(CharSequence.class, trackingConsumer);
+        eventBus.post("Hello");
+        assertEventCount(2);
+
+        registration1.unregister();
+        eventBus.post("Hello");
+        assertEventCount(3);
+    }
+
+    @Test
+    public void testPriorityWithAnnotatedSubscriber() {
+        final List<String> order = new ArrayList<>();
+        eventBus.register(new Object() {
+            @Subscribe(priority = 5)
+            public void onEvent(String event) {
+                order.add("annotated");
+            }
+        });
+        eventBus.subscribe(String.class, new EventConsumer<String>() {
+            @Override
+            public void onEvent(String event) {
+                order.add("low");
+            }
+        }, ThreadMode.POSTING, 1, false);
+        eventBus.subscribe(String.class, new EventConsumer<String>() {
+            @Override
+            public void onEvent(String event) {
+                order.add("high");
+            }
+        }, ThreadMode.POSTING, 10, false);
+
+        eventBus.post("Hello");
+        assertEquals(Arrays.asList("high", "annotated", "low"), order);
+    }
+
+    @Test
+    public void testSticky() {
+        eventBus.postSticky("Sticky");
+        eventBus.subscribe(String.class, trackingConsumer, ThreadMode.POSTING, 0, true);
+        assertEventCount(1);
+        assertEquals("Sticky", lastEvent);
+    }
+
+    @Test
+    public void testBackgroundThread() {
+        eventBus.subscribe(String.class, trackingConsumer, ThreadMode.ASYNC);
+        eventBus.post("Hello");
+        waitForEventCount(1, 1000);
+        assertNotSame(Thread.currentThread(), lastThread);
+    }
+
+    @Test
+    public void testConsumerException() {
+        final RuntimeException exception = new RuntimeException("Test");
+        EventConsumer<String> failingConsumer = new EventConsumer<String>() {
+            @Override
+            public void onEvent(String event) {
+                throw exception;
+            }
+        };
+        eventBus = EventBus.builder().logSubscriberExceptions(false).build();
+        eventBus.subscribe(String.class, failingConsumer);
+        eventBus.subscribe(SubscriberExceptionEvent.class, trackingConsumer);
+        eventBus.post("Hello");
+
+        assertEventCount(1);
+        SubscriberExceptionEvent exceptionEvent = (SubscriberExceptionEvent) lastEvent;
+        assertSame(exception, exceptionEvent.throwable);
+        assertSame(failingConsumer, exceptionEvent.causingSubscriber);
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.greenrobot.eventbus.meta.FlattenedSubscriberInfo;
+import org.greenrobot.eventbus.meta.SubscriberInfo;
+import org.junit.Test;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Tests the index generated by the annotation processor for this module. */
+public class EventBusGeneratedIndexTest {
+
+    private final EventBusJavaTestsIndex index = new EventBusJavaTestsIndex();
+
+    @Test
+    public void testSubscriberInfoCreatedOnce() {
+        SubscriberInfo info = index.getSubscriberInfo(EventBusBasicTest.StringEventSubscriber.class);
+        assertNotNull(info);
+        assertSame(EventBusBasicTest.StringEventSubscriber.class, info.getSubscriberClass());
+        assertEquals(1, info.getSubscriberMethods().length);
+        assertSame(info, index.getSubscriberInfo(EventBusBasicTest.StringEventSubscriber.class));
+    }
+
+    @Test
+    public void testNotIndexed() {
+        assertNull(index.getSubscriberInfo(Object.class));
+        assertNull(index.getSubscriberInfo(EventBusGeneratedIndexTest.class));
+    }
+
+    @Test
+    public void testSubscriberClassesMatchNames() {
+        Class<?>[] subscriberClasses = index.getSubscriberClasses();
+        String[] names = index.getSubscriberClassNames();
+        assertEquals(subscriberClasses.length, names.length);
+        Set<String> nameSet = new HashSet<>(Arrays.asList(names));
+        for (Class<?> subscriberClass : subscriberClasses) {
+            assertTrue(nameSet.contains(subscriberClass.getName()));
+            assertSame(subscriberClass, index.getSubscriberInfo(subscriberClass).getSubscriberClass());
+        }
+    }
+
+    @Test
+    public void testFlattenedSubscriberMethodsMatchReflection() {
+        SubscriberMethodFinder reflectionFinder = new SubscriberMethodFinder(null, false, true);
+        SubscriberMethodFinder.clearCaches();
+        int inheritedCount = 0;
+        for (Class<?> subscriberClass : index.getSubscriberClasses()) {
+            SubscriberInfo info = index.getSubscriberInfo(subscriberClass);
+            assertTrue(subscriberClass.getName(), info instanceof FlattenedSubscriberInfo);
+            if (Modifier.isAbstract(subscriberClass.getModifiers())) {
+                // Unlike reflection, the index keeps abstract methods, which are never invoked directly anyway
+                continue;
+            }
+            List<SubscriberMethod> indexed = Arrays.asList(info.getSubscriberMethods());
+            List<SubscriberMethod> reflected = reflectionFinder.findSubscriberMethods(subscriberClass);
+            assertEquals(subscriberClass.getName(), new HashSet<>(reflected), new HashSet<>(indexed));
+            assertEquals(subscriberClass.getName(), reflected.size(), indexed.size());
+            for (SubscriberMethod subscriberMethod : indexed) {
+                if (subscriberMethod.declaringClass != subscriberClass) {
+                    inheritedCount++;
+                }
+            }
+        }
+        SubscriberMethodFinder.clearCaches();
+        assertTrue(inheritedCount > 0);
+    }
+
+    @Test
+    public void testEventTypesMatchReflection() {
+        Class<?>[] eventClasses = {IntTestEvent.class, Object.class, EventBusInheritanceTest.MyEventExtended.class,
+                EventBusInheritanceTest.MyEventInterfaceExtended.class};
+        for (Class<?> eventClass : eventClasses) {
+            Class<?>[] eventTypes = index.getEventTypes(eventClass);
+            assertNotNull(eventClass.getName(), eventTypes);
+            assertEquals(getEventTypesUsingReflection(eventClass), Arrays.asList(eventTypes));
+        }
+        // Platform classes may have a different hierarchy at runtime
+        assertNull(index.getEventTypes(String.class));
+        assertNull(index.getEventTypes(EventBusGeneratedIndexTest.class));
+    }
+
+    private static List<Class<?>> getEventTypesUsingReflection(Class<?> eventClass) {
+        Set<Class<?>> eventTypes = new LinkedHashSet<>();
+        for (Class<?> clazz = eventClass; clazz != null; clazz = clazz.getSuperclass()) {
+            eventTypes.add(clazz);
+            EventBus.addInterfaces(eventTypes, clazz.getInterfaces());
+        }
+        return new ArrayList<>(eventTypes);
+    }
+
+    @Test
+    public void testRegisterWithIndex() {
+        EventBus eventBus = EventBus.builder().addIndex(index).build();
+        EventBusBasicTest.StringEventSubscriber subscriber = new EventBusBasicTest.StringEventSubscriber();
+        eventBus.register(subscriber);
+        eventBus.post("Hello");
+        assertEquals("Hello", subscriber.lastStringEvent);
+    }
+
+}
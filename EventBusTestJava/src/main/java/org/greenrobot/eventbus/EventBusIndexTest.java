@@ -16,6 +16,7 @@
 
 package org.greenrobot.eventbus;
 
+import org.greenrobot.eventbus.meta.EnumerableSubscriberInfoIndex;
 import org.greenrobot.eventbus.meta.SimpleSubscriberInfo;
 import org.greenrobot.eventbus.meta.SubscriberInfo;
 import org.greenrobot.eventbus.meta.SubscriberInfoIndex;
@@ -23,6 +24,9 @@ import org.greenrobot.eventbus.meta.SubscriberMethodInfo;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class EventBusIndexTest {
     private String value;
 
@@ -48,7 +52,162 @@ public class EventBusIndexTest {
         Assert.assertEquals("Yepp", value);
     }
 
+    /** Manual infos get the superclass methods from reflection, whatever shouldCheckSuperclass says. */
+    @Test
+    public void testManualIndexWithInheritedMethods() {
+        SubscriberInfoIndex index = new SubscriberInfoIndex() {
+            @Override
+            public SubscriberInfo getSubscriberInfo(Class<?> subscriberClass) {
+                if (subscriberClass != SubSubscriber.class) {
+                    return null;
+                }
+                SubscriberMethodInfo[] methodInfos = {
+                        new SubscriberMethodInfo("onSub", String.class)
+                };
+                return new SimpleSubscriberInfo(SubSubscriber.class, false, methodInfos);
+            }
+        };
+
+        EventBus eventBus = EventBus.builder().addIndex(index).build();
+        SubSubscriber subscriber = new SubSubscriber();
+        eventBus.register(subscriber);
+        eventBus.post("Sub");
+        eventBus.post(42);
+        Assert.assertEquals("Sub", subscriber.lastString);
+        Assert.assertEquals(Integer.valueOf(42), subscriber.lastInteger);
+    }
+
+    @Test
+    public void testFlattenedIndexSkipsSuperclasses() {
+        SubscriberInfoIndex index = new SubscriberInfoIndex() {
+            @Override
+            public SubscriberInfo getSubscriberInfo(Class<?> subscriberClass) {
+                Assert.assertEquals(FlattenedSubSubscriber.class, subscriberClass);
+                SubscriberMethodInfo[] methodInfos = {
+                        new SubscriberMethodInfo("onSub", String.class)
+                };
+                return SimpleSubscriberInfo.flattened(FlattenedSubSubscriber.class, methodInfos);
+            }
+        };
+
+        EventBus eventBus = EventBus.builder().addIndex(index).build();
+        FlattenedSubSubscriber subscriber = new FlattenedSubSubscriber();
+        eventBus.register(subscriber);
+        eventBus.post("Sub");
+        eventBus.post(42);
+        Assert.assertEquals("Sub", subscriber.lastString);
+        // The flattened info is taken as complete
+        Assert.assertNull(subscriber.lastInteger);
+    }
+
+    @Test
+    public void testSubscriberMethodsResolvedOnce() {
+        SubscriberMethodInfo[] methodInfos = {
+                new SubscriberMethodInfo("someMethodWithoutAnnotation", String.class)
+        };
+        SubscriberInfo info = new SimpleSubscriberInfo(EventBusIndexTest.class, false, methodInfos);
+        SubscriberMethod[] subscriberMethods = info.getSubscriberMethods();
+        Assert.assertEquals(1, subscriberMethods.length);
+        Assert.assertSame(subscriberMethods, info.getSubscriberMethods());
+    }
+
+    @Test
+    public void testMergedIndexKeepsIndexOrder() {
+        SubscriberInfo info1 = newInfo();
+        SubscriberInfo info2 = newInfo();
+        CountingIndex otherClassIndex = new CountingIndex(String.class, newInfo());
+        CountingIndex index1 = new CountingIndex(EventBusIndexTest.class, info1);
+        CountingIndex index2 = new CountingIndex(EventBusIndexTest.class, info2);
+        MergedSubscriberInfoIndex merged = new MergedSubscriberInfoIndex(
+                Arrays.<SubscriberInfoIndex>asList(otherClassIndex, index1, index2));
+
+        Assert.assertSame(info1, merged.getSubscriberInfo(EventBusIndexTest.class));
+        // Enumerable indexes not listing the class are skipped
+        Assert.assertEquals(0, otherClassIndex.lookupCount.get());
+        Assert.assertEquals(0, index2.lookupCount.get());
+        Assert.assertEquals(2, merged.getSubscriberClassNames().length);
+    }
+
+    @Test
+    public void testMergedIndexCachesResultsAndMisses() {
+        final AtomicInteger lookupCount = new AtomicInteger();
+        final SubscriberInfo info = newInfo();
+        SubscriberInfoIndex index = new SubscriberInfoIndex() {
+            @Override
+            public SubscriberInfo getSubscriberInfo(Class<?> subscriberClass) {
+                lookupCount.incrementAndGet();
+                return subscriberClass == EventBusIndexTest.class ? info : null;
+            }
+        };
+        MergedSubscriberInfoIndex merged = new MergedSubscriberInfoIndex(Arrays.asList(index));
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertSame(info, merged.getSubscriberInfo(EventBusIndexTest.class));
+            Assert.assertNull(merged.getSubscriberInfo(Object.class));
+        }
+        Assert.assertEquals(2, lookupCount.get());
+    }
+
+    private SubscriberInfo newInfo() {
+        SubscriberMethodInfo[] methodInfos = {
+                new SubscriberMethodInfo("someMethodWithoutAnnotation", String.class)
+        };
+        return new SimpleSubscriberInfo(EventBusIndexTest.class, false, methodInfos);
+    }
+
     public void someMethodWithoutAnnotation(String value) {
         this.value = value;
     }
+
+    static class CountingIndex implements EnumerableSubscriberInfoIndex {
+        final AtomicInteger lookupCount = new AtomicInteger();
+        final Class<?> subscriberClass;
+        final SubscriberInfo info;
+
+        CountingIndex(Class<?> subscriberClass, SubscriberInfo info) {
+            this.subscriberClass = subscriberClass;
+            this.info = info;
+        }
+
+        @Override
+        public SubscriberInfo getSubscriberInfo(Class<?> subscriberClass) {
+            lookupCount.incrementAndGet();
+            return subscriberClass == this.subscriberClass ? info : null;
+        }
+
+        @Override
+        public Class<?>[] getSubscriberClasses() {
+            return new Class<?>[]{subscriberClass};
+        }
+
+        @Override
+        public String[] getSubscriberClassNames() {
+            return new String[]{subscriberClass.getName()};
+        }
+    }
+
+    public static class BaseSubscriber {
+        Integer lastInteger;
+
+        @Subscribe
+        public void onBase(Integer event) {
+            lastInteger = event;
+        }
+    }
+
+    public static class SubSubscriber extends BaseSubscriber {
+        String lastString;
+
+        public void onSub(String event) {
+            lastString = event;
+        }
+    }
+
+    public static class FlattenedSubSubscriber extends BaseSubscriber {
+        String lastString;
+
+        public void onSub(String event) {
+            lastString = event;
+        }
+    }
 }
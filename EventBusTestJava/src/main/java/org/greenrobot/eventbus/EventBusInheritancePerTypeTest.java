@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Tests {@link EventInheritance} and {@link EventBusBuilder#eventInheritance(Class, boolean)}. */
+public class EventBusInheritancePerTypeTest {
+
+    @Test
+    public void testAnnotationDisablesInheritance() {
+        EventBus eventBus = EventBus.builder().build();
+        BaseSubscriber subscriber = new BaseSubscriber();
+        eventBus.register(subscriber);
+
+        eventBus.post(new PlainEvent());
+        eventBus.post(new NoInheritanceEvent());
+        eventBus.post(new NoInheritanceEventExtended());
+        assertEquals(1, subscriber.baseEvents.size());
+        assertTrue(subscriber.baseEvents.get(0) instanceof PlainEvent);
+        assertFalse(eventBus.hasSubscriberForEvent(NoInheritanceEvent.class));
+        assertTrue(eventBus.hasSubscriberForEvent(PlainEvent.class));
+    }
+
+    @Test
+    public void testAnnotationEnablesInheritance() {
+        EventBus eventBus = EventBus.builder().eventInheritance(false).build();
+        BaseSubscriber subscriber = new BaseSubscriber();
+        eventBus.register(subscriber);
+
+        eventBus.post(new PlainEvent());
+        eventBus.post(new InheritanceEvent());
+        eventBus.post(new InheritanceEventExtended());
+        assertEquals(2, subscriber.baseEvents.size());
+        assertTrue(subscriber.baseEvents.get(0) instanceof InheritanceEvent);
+        assertTrue(subscriber.baseEvents.get(1) instanceof InheritanceEventExtended);
+    }
+
+    @Test
+    public void testBuilderOverridesAnnotation() {
+        EventBus eventBus = EventBus.builder()
+                .eventInheritance(NoInheritanceEvent.class, true)
+                .eventInheritance(PlainEvent.class, false)
+                .build();
+        BaseSubscriber subscriber = new BaseSubscriber();
+        eventBus.register(subscriber);
+
+        eventBus.post(new PlainEvent());
+        eventBus.post(new NoInheritanceEvent());
+        eventBus.post(new NoInheritanceEventExtended());
+        assertEquals(2, subscriber.baseEvents.size());
+        assertTrue(subscriber.baseEvents.get(0) instanceof NoInheritanceEvent);
+        assertTrue(subscriber.baseEvents.get(1) instanceof NoInheritanceEventExtended);
+    }
+
+    @Test
+    public void testSupertypeSubscriberRegisteredLater() {
+        EventBus eventBus = EventBus.builder().build();
+        PlainEventSubscriber leafSubscriber = new PlainEventSubscriber();
+        eventBus.register(leafSubscriber);
+        // Leaf type without supertype subscribers: dispatched directly
+        eventBus.post(new PlainEvent());
+        assertEquals(1, leafSubscriber.count);
+
+        BaseSubscriber baseSubscriber = new BaseSubscriber();
+        eventBus.register(baseSubscriber);
+        eventBus.post(new PlainEvent());
+        assertEquals(2, leafSubscriber.count);
+        assertEquals(1, baseSubscriber.baseEvents.size());
+
+        eventBus.unregister(baseSubscriber);
+        eventBus.post(new PlainEvent());
+        assertEquals(3, leafSubscriber.count);
+        assertEquals(1, baseSubscriber.baseEvents.size());
+    }
+
+    @Test
+    public void testSticky() {
+        EventBus eventBus = EventBus.builder().eventInheritance(InheritanceEvent.class, false).build();
+        eventBus.postSticky(new PlainEvent());
+        eventBus.postSticky(new InheritanceEvent());
+        eventBus.postSticky(new NoInheritanceEvent());
+        StickyBaseSubscriber subscriber = new StickyBaseSubscriber();
+        eventBus.register(subscriber);
+        assertEquals(1, subscriber.baseEvents.size());
+        assertTrue(subscriber.baseEvents.get(0) instanceof PlainEvent);
+    }
+
+    @Test
+    public void testReplay() {
+        EventBus eventBus = EventBus.builder()
+                .replay(PlainEvent.class, 2)
+                .replay(NoInheritanceEvent.class, 2)
+                .build();
+        eventBus.post(new PlainEvent());
+        eventBus.post(new NoInheritanceEvent());
+        StickyBaseSubscriber subscriber = new StickyBaseSubscriber();
+        eventBus.register(subscriber);
+        assertEquals(1, subscriber.baseEvents.size());
+        assertTrue(subscriber.baseEvents.get(0) instanceof PlainEvent);
+        assertEquals(1, eventBus.getReplayEvents(NoInheritanceEvent.class).size());
+    }
+
+    public static class BaseEvent {
+    }
+
+    public static class PlainEvent extends BaseEvent {
+    }
+
+    @EventInheritance(false)
+    public static class NoInheritanceEvent extends BaseEvent {
+    }
+
+    public static class NoInheritanceEventExtended extends NoInheritanceEvent {
+    }
+
+    @EventInheritance
+    public static class InheritanceEvent extends BaseEvent {
+    }
+
+    public static class InheritanceEventExtended extends InheritanceEvent {
+    }
+
+    public static class BaseSubscriber {
+        final List<BaseEvent> baseEvents = new ArrayList<>();
+
+        @Subscribe
+        public void onEvent(BaseEvent event) {
+            baseEvents.add(event);
+        }
+    }
+
+    public static class StickyBaseSubscriber {
+        final List<BaseEvent> baseEvents = new ArrayList<>();
+
+        @Subscribe(sticky = true)
+        public void onEvent(BaseEvent event) {
+            baseEvents.add(event);
+        }
+    }
+
+    public static class PlainEventSubscriber {
+        int count;
+
+        @Subscribe
+        public void onEvent(PlainEvent event) {
+            count++;
+        }
+    }
+
+}
@@ -18,7 +18,12 @@ package org.greenrobot.eventbus;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashSet;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Markus Junginger, greenrobot
@@ -55,6 +60,14 @@ public class EventBusInheritanceTest {
         assertEquals(1, countMyEventExtended);
     }
 
+    @Test
+    public void testEventTypesSharedAcrossInstances() {
+        Class<?>[] eventTypes = eventBus.lookupAllEventTypes(MyEventExtended.class);
+        assertSame(eventTypes, new EventBus().lookupAllEventTypes(MyEventExtended.class));
+        assertEquals(new HashSet<>(Arrays.asList(eventTypes)).size(), eventTypes.length);
+        assertEquals(MyEventExtended.class, eventTypes[0]);
+    }
+
     @Test
     public void testEventClassHierarchySticky() {
         eventBus.postSticky("Hello");
@@ -66,6 +79,25 @@ public class EventBusInheritanceTest {
         assertEquals(3, countObjectEvent);
     }
 
+    @Test
+    public void testEventClassHierarchyStickyAfterRemove() {
+        eventBus.postSticky(new MyEvent());
+        eventBus.postSticky(new MyEventExtended());
+        eventBus.removeStickyEvent(MyEventExtended.class);
+        eventBus.postSticky(new MyEventExtended());
+        assertTrue(eventBus.removeStickyEvent(eventBus.getStickyEvent(MyEvent.class)));
+        eventBus.register(new StickySubscriber());
+        assertEquals(1, countMyEventExtended);
+        assertEquals(1, countMyEvent);
+        assertEquals(1, countMyEventInterface);
+        assertEquals(1, countMyEventInterfaceExtended);
+        assertEquals(1, countObjectEvent);
+
+        eventBus.removeAllStickyEvents();
+        eventBus.register(new StickySubscriber());
+        assertEquals(1, countObjectEvent);
+    }
+
     @Test
     public void testEventInterfaceHierarchy() {
         eventBus.register(this);
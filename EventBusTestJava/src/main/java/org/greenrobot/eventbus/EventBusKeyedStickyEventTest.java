@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EventBusKeyedStickyEventTest extends AbstractEventBusTest {
+
+    public EventBusKeyedStickyEventTest() {
+        super(true);
+    }
+
+    @Test
+    public void testPostKeyedStickyAndGet() {
+        eventBus.postKeyedSticky("A", "Sticky A");
+        eventBus.postKeyedSticky("B", "Sticky B");
+        eventBus.postKeyedSticky("A", "Sticky A2");
+        assertEquals("Sticky A2", eventBus.getKeyedStickyEvent(String.class, "A"));
+        assertEquals("Sticky B", eventBus.getKeyedStickyEvent(String.class, "B"));
+        assertNull(eventBus.getKeyedStickyEvent(String.class, "C"));
+        assertNull(eventBus.getStickyEvent(String.class));
+        assertEquals(2, eventBus.getKeyedStickyEvents(String.class).size());
+    }
+
+    @Test
+    public void testRegisterGetsAllKeys() {
+        eventBus.postKeyedSticky("A", "Sticky A");
+        eventBus.postKeyedSticky("B", "Sticky B");
+        eventBus.postSticky("Sticky");
+        eventBus.register(new StickyStringSubscriber());
+        assertEquals(3, eventCount.intValue());
+        assertTrue(eventsReceived.containsAll(Arrays.asList("Sticky", "Sticky A", "Sticky B")));
+    }
+
+    @Test
+    public void testRegisterGetsAllKeysOfSubtypes() {
+        eventBus.postKeyedSticky("A", "Sticky A");
+        eventBus.postKeyedSticky(1, new IntTestEvent(1));
+        eventBus.register(new StickyObjectSubscriber());
+        assertEquals(2, eventCount.intValue());
+    }
+
+    @Test
+    public void testRemoveKeyedStickyEvent() {
+        eventBus.postKeyedSticky("A", "Sticky A");
+        eventBus.postKeyedSticky("B", "Sticky B");
+        assertEquals("Sticky A", eventBus.removeKeyedStickyEvent(String.class, "A"));
+        assertNull(eventBus.removeKeyedStickyEvent(String.class, "A"));
+        eventBus.register(new StickyStringSubscriber());
+        assertEquals(1, eventCount.intValue());
+        assertEquals("Sticky B", lastEvent);
+
+        eventBus.removeAllStickyEvents();
+        assertTrue(eventBus.getKeyedStickyEvents(String.class).isEmpty());
+    }
+
+    @Test
+    public void testMaxStickyKeysEvictsLeastRecentlyUsed() {
+        eventBus = EventBus.builder().maxStickyKeys(String.class, 2).build();
+        eventBus.postKeyedSticky("A", "Sticky A");
+        eventBus.postKeyedSticky("B", "Sticky B");
+        // Makes B the least recently used key
+        eventBus.getKeyedStickyEvent(String.class, "A");
+        eventBus.postKeyedSticky("C", "Sticky C");
+        Map<Object, String> stickyEvents = eventBus.getKeyedStickyEvents(String.class);
+        assertEquals(Arrays.asList("A", "C"), new ArrayList<>(stickyEvents.keySet()));
+
+        // Other types are not limited
+        for (int i = 0; i < 10; i++) {
+            eventBus.postKeyedSticky(i, new IntTestEvent(i));
+        }
+        assertEquals(10, eventBus.getKeyedStickyEvents(IntTestEvent.class).size());
+    }
+
+    @Test
+    public void testMaxStickyWeight() {
+        StickyEventWeigher weigher = new StickyEventWeigher() {
+            @Override
+            public long weigh(Object key, Object event) {
+                return ((String) event).length();
+            }
+        };
+        eventBus = EventBus.builder().maxStickyWeight(String.class, 10, weigher).build();
+        eventBus.postKeyedSticky("A", "12345");
+        eventBus.postKeyedSticky("B", "1234");
+        assertEquals(9, eventBus.getKeyedStickyWeight(String.class));
+        eventBus.postKeyedSticky("A", "123");
+        assertEquals(7, eventBus.getKeyedStickyWeight(String.class));
+
+        eventBus.postKeyedSticky("C", "123456");
+        assertEquals(9, eventBus.getKeyedStickyWeight(String.class));
+        assertNull(eventBus.getKeyedStickyEvent(String.class, "B"));
+        assertSame("123", eventBus.getKeyedStickyEvent(String.class, "A"));
+        assertEquals(9, eventBus.getKeyedStickyWeight());
+
+        eventBus.removeKeyedStickyEvent(String.class, "C");
+        assertEquals(3, eventBus.getKeyedStickyWeight(String.class));
+    }
+
+    public class StickyStringSubscriber {
+        @Subscribe(sticky = true)
+        public void onEvent(String event) {
+            trackEvent(event);
+        }
+    }
+
+    public class StickyObjectSubscriber {
+        @Subscribe(sticky = true)
+        public void onEvent(Object event) {
+            trackEvent(event);
+        }
+    }
+
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Tests {@link EventBusBuilder#collectMetrics(boolean)}. */
+public class EventBusMetricsTest {
+
+    @Test
+    public void testDisabledByDefault() {
+        assertNull(EventBus.builder().build().getMetrics());
+    }
+
+    @Test
+    public void testPostsAndDeliveries() {
+        EventBus eventBus = EventBus.builder().collectMetrics(true).build();
+        eventBus.register(new StringSubscriber());
+        eventBus.register(new StringSubscriber());
+        eventBus.post("Hello");
+        eventBus.post("World");
+        eventBus.post(42);
+
+        MetricsSnapshot metrics = eventBus.getMetrics();
+        assertEquals(2, metrics.getEventType(String.class).getPosts());
+        assertEquals(0, metrics.getEventType(String.class).getNoSubscriberPosts());
+        assertEquals(1, metrics.getEventType(Integer.class).getPosts());
+        assertEquals(1, metrics.getEventType(Integer.class).getNoSubscriberPosts());
+        // The NoSubscriberEvent posted for the Integer
+        assertEquals(1, metrics.getEventType(NoSubscriberEvent.class).getPosts());
+        assertEquals(0, metrics.getEventType(Long.class).getPosts());
+
+        MetricsSnapshot.SubscriberMetrics subscriberMetrics = getSubscriberMetrics(metrics, "onEvent");
+        assertSame(StringSubscriber.class, subscriberMetrics.getSubscriberClass());
+        assertSame(String.class, subscriberMetrics.getEventType());
+        // Both subscriber instances share the metrics of the method
+        assertEquals(4, subscriberMetrics.getDeliveries());
+        assertEquals(0, subscriberMetrics.getExceptions());
+        MetricsSnapshot.Histogram executionTimes = subscriberMetrics.getExecutionTimes();
+        assertEquals(4, executionTimes.getCount());
+        assertTrue(executionTimes.getMaxNanos() >= executionTimes.getPercentileNanos(50));
+        assertTrue(executionTimes.getPercentileNanos(100) <= executionTimes.getMaxNanos());
+    }
+
+    @Test
+    public void testExceptionsAndCancellations() {
+        EventBus eventBus = EventBus.builder().collectMetrics(true).logSubscriberExceptions(false)
+                .sendSubscriberExceptionEvent(false).build();
+        eventBus.register(new ThrowingSubscriber());
+        eventBus.register(new CancelingSubscriber(eventBus));
+        eventBus.post("Hello");
+        eventBus.post(1);
+
+        MetricsSnapshot metrics = eventBus.getMetrics();
+        assertEquals(1, metrics.getEventType(String.class).getCancellations());
+        MetricsSnapshot.SubscriberMetrics throwingMetrics = getSubscriberMetrics(metrics, "onEventThrowing");
+        assertEquals(1, throwingMetrics.getDeliveries());
+        assertEquals(1, throwingMetrics.getExceptions());
+        assertEquals(1, throwingMetrics.getExecutionTimes().getCount());
+        assertEquals(1, getSubscriberMetrics(metrics, "onEventCanceling").getDeliveries());
+    }
+
+    @Test
+    public void testEventConsumers() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        EventBus eventBus = EventBus.builder().collectMetrics(true).executorService(executorService).build();
+        eventBus.subscribe(String.class, new StringConsumer());
+        eventBus.subscribe(String.class, new StringConsumer());
+        eventBus.subscribe(String.class, new StringConsumer(), ThreadMode.BACKGROUND);
+        eventBus.subscribe(String.class, new OtherStringConsumer());
+        eventBus.post("Hello");
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Per consumer class, event type and thread mode
+        int consumerMetricsCount = 0;
+        for (MetricsSnapshot.SubscriberMetrics subscriberMetrics : eventBus.getMetrics().getSubscribers()) {
+            assertNull(subscriberMetrics.getMethodName());
+            assertSame(String.class, subscriberMetrics.getEventType());
+            Class<?> consumerClass = subscriberMetrics.getSubscriberClass();
+            ThreadMode threadMode = subscriberMetrics.getThreadMode();
+            long expectedDeliveries = consumerClass == StringConsumer.class && threadMode == ThreadMode.POSTING ? 2 : 1;
+            assertEquals(expectedDeliveries, subscriberMetrics.getDeliveries());
+            assertEquals(expectedDeliveries, subscriberMetrics.getExecutionTimes().getCount());
+            assertTrue(consumerClass == StringConsumer.class || consumerClass == OtherStringConsumer.class);
+            consumerMetricsCount++;
+        }
+        assertEquals(3, consumerMetricsCount);
+    }
+
+    @Test
+    public void testQueueWaitTimes() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        EventBus eventBus = EventBus.builder().collectMetrics(true).executorService(executorService).build();
+        eventBus.register(new AsyncSubscriber());
+        // Keeps the only thread busy, so the events stay queued
+        final CountDownLatch latch = new CountDownLatch(1);
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        eventBus.post("Hello");
+        eventBus.post("World");
+
+        MetricsSnapshot metrics = eventBus.getMetrics();
+        MetricsSnapshot.QueueMetrics asyncQueue = metrics.getQueues().get("async");
+        assertEquals(2, asyncQueue.getDepth());
+        assertEquals(0, asyncQueue.getWaitTimes().getCount());
+        assertEquals(0, metrics.getQueues().get("background").getDepth());
+
+        Thread.sleep(2);
+        latch.countDown();
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+        metrics = eventBus.getMetrics();
+        asyncQueue = metrics.getQueues().get("async");
+        assertEquals(0, asyncQueue.getDepth());
+        assertEquals(2, asyncQueue.getWaitTimes().getCount());
+        assertTrue(asyncQueue.getWaitTimes().getMaxNanos() >= 2000000);
+        assertEquals(2, metrics.getEventType(String.class).getQueueWaitTimes().getCount());
+        assertEquals(0, metrics.getQueues().get("background").getWaitTimes().getCount());
+    }
+
+    @Test
+    public void testQueueWaitNotRecordedAfterUnregister() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        EventBus eventBus = EventBus.builder().collectMetrics(true).executorService(executorService).build();
+        AsyncSubscriber subscriber = new AsyncSubscriber();
+        eventBus.register(subscriber);
+        final CountDownLatch latch = new CountDownLatch(1);
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        eventBus.post("Hello");
+        eventBus.unregister(subscriber);
+
+        latch.countDown();
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+        MetricsSnapshot metrics = eventBus.getMetrics();
+        assertEquals(0, metrics.getQueues().get("async").getDepth());
+        assertEquals(0, metrics.getQueues().get("async").getWaitTimes().getCount());
+        assertEquals(0, metrics.getEventType(String.class).getQueueWaitTimes().getCount());
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        long[] bucketCounts = new long[MetricsSnapshot.Histogram.BUCKET_COUNT];
+        bucketCounts[0] = 1; // 0 ns
+        bucketCounts[4] = 2; // 8..15 ns
+        bucketCounts[10] = 1; // 512..1023 ns
+        MetricsSnapshot.Histogram histogram = new MetricsSnapshot.Histogram(4, 800, 800, bucketCounts);
+        assertEquals(200, histogram.getMeanNanos());
+        assertEquals(0, histogram.getPercentileNanos(25));
+        assertEquals(15, histogram.getPercentileNanos(50));
+        assertEquals(15, histogram.getPercentileNanos(75));
+        assertEquals(800, histogram.getPercentileNanos(99));
+        assertEquals(10, EventBusMetrics.HistogramRecorder.bucketIndex(1000));
+        assertEquals(0, EventBusMetrics.HistogramRecorder.bucketIndex(0));
+        assertEquals(63, EventBusMetrics.HistogramRecorder.bucketIndex(Long.MAX_VALUE));
+        assertEquals(0, new MetricsSnapshot.Histogram(0, 0, 0, new long[64]).getPercentileNanos(99));
+    }
+
+    private static MetricsSnapshot.SubscriberMetrics getSubscriberMetrics(MetricsSnapshot metrics, String methodName) {
+        for (MetricsSnapshot.SubscriberMetrics subscriberMetrics : metrics.getSubscribers()) {
+            String name = subscriberMetrics.getMethodName();
+            if (methodName == null ? name == null : methodName.equals(name)) {
+                return subscriberMetrics;
+            }
+        }
+        throw new AssertionError("No metrics for " + methodName);
+    }
+
+    public static class StringSubscriber {
+        @Subscribe
+        public void onEvent(String event) {
+        }
+    }
+
+    public static class StringConsumer implements EventConsumer<String> {
+        @Override
+        public void onEvent(String event) {
+        }
+    }
+
+    public static class OtherStringConsumer implements EventConsumer<String> {
+        @Override
+        public void onEvent(String event) {
+        }
+    }
+
+    public static class AsyncSubscriber {
+        @Subscribe(threadMode = ThreadMode.ASYNC)
+        public void onEvent(String event) {
+        }
+    }
+
+    public static class ThrowingSubscriber {
+        @Subscribe
+        public void onEventThrowing(Integer event) {
+            throw new RuntimeException("Test");
+        }
+    }
+
+    public static class CancelingSubscriber {
+        private final EventBus eventBus;
+
+        CancelingSubscriber(EventBus eventBus) {
+            this.eventBus = eventBus;
+        }
+
+        @Subscribe
+        public void onEventCanceling(String event) {
+            eventBus.cancelEventDelivery(event);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.greenrobot.eventbus.meta.FlattenedSubscriberInfo;
+import org.greenrobot.eventbus.meta.SubscriberInfo;
+import org.greenrobot.eventbus.packageprivate.PackagePrivateSubscribers;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Subscribers the generated index cannot access are indexed through a helper class in their own package. */
+public class EventBusPackagePrivateIndexTest {
+
+    private final EventBusJavaTestsIndex index = new EventBusJavaTestsIndex();
+    private final List<Object> events = new ArrayList<>();
+
+    @Test
+    public void testIndexedWithInvokers() {
+        Object subscriber = PackagePrivateSubscribers.newSubscriber(events);
+        SubscriberInfo info = index.getSubscriberInfo(subscriber.getClass());
+        assertNotNull(info);
+        assertTrue(info instanceof FlattenedSubscriberInfo);
+        // The overridden Integer method is included once
+        assertEquals(3, info.getSubscriberMethods().length);
+        for (SubscriberMethod subscriberMethod : info.getSubscriberMethods()) {
+            assertNull(subscriberMethod.method);
+            assertNotNull(subscriberMethod.invoker);
+        }
+        assertTrue(Arrays.asList(index.getSubscriberClasses()).contains(subscriber.getClass()));
+    }
+
+    @Test
+    public void testPost() {
+        EventBus eventBus = EventBus.builder().addIndex(index).build();
+        Object subscriber = PackagePrivateSubscribers.newSubscriber(events);
+        Object event = PackagePrivateSubscribers.newEvent();
+        eventBus.register(subscriber);
+        eventBus.post("Hello");
+        eventBus.post(event);
+        eventBus.post(42);
+        assertEquals(Arrays.asList("Hello", event, 42), events);
+
+        eventBus.unregister(subscriber);
+        eventBus.post("Hello");
+        assertEquals(3, events.size());
+    }
+
+}
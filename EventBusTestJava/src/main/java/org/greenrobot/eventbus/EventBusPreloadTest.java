@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.greenrobot.eventbus.meta.EnumerableSubscriberInfoIndex;
+import org.greenrobot.eventbus.meta.SimpleSubscriberInfo;
+import org.greenrobot.eventbus.meta.SubscriberInfo;
+import org.greenrobot.eventbus.meta.SubscriberMethodInfo;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventBusPreloadTest extends AbstractEventBusTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+    private final CountingIndex index = new CountingIndex();
+
+    @Test
+    public void testPreload() throws InterruptedException {
+        eventBus = EventBus.builder().addIndex(index).executorService(executorService).build();
+        eventBus.preload(PreloadSubscriber.class, PreloadSubscriber2.class);
+        awaitPreload();
+        assertEquals(2, index.lookupCount.get());
+
+        eventBus.register(new PreloadSubscriber());
+        eventBus.register(new PreloadSubscriber2());
+        // Cache hits, the index is not consulted again
+        assertEquals(2, index.lookupCount.get());
+
+        eventBus.post("Hello");
+        assertEventCount(2);
+    }
+
+    @Test
+    public void testPreloadIndexedSubscribers() throws InterruptedException {
+        eventBus = EventBus.builder().addIndex(index).executorService(executorService).build();
+        eventBus.preloadIndexedSubscribers();
+        awaitPreload();
+        assertEquals(2, index.lookupCount.get());
+
+        eventBus.register(new PreloadSubscriber2());
+        assertEquals(2, index.lookupCount.get());
+    }
+
+    @Test
+    public void testPreloadSkipsIllegalSubscriber() throws InterruptedException {
+        eventBus = EventBus.builder().executorService(executorService).build();
+        eventBus.preload(IntTestEvent.class, PreloadSubscriber.class);
+        awaitPreload();
+
+        eventBus.register(new PreloadSubscriber());
+        eventBus.post("Hello");
+        assertEventCount(1);
+    }
+
+    private void awaitPreload() throws InterruptedException {
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    class CountingIndex implements EnumerableSubscriberInfoIndex {
+        final AtomicInteger lookupCount = new AtomicInteger();
+
+        @Override
+        public SubscriberInfo getSubscriberInfo(Class<?> subscriberClass) {
+            if (subscriberClass != PreloadSubscriber.class && subscriberClass != PreloadSubscriber2.class) {
+                return null;
+            }
+            lookupCount.incrementAndGet();
+            SubscriberMethodInfo[] methodInfos = {new SubscriberMethodInfo("onEvent", String.class)};
+            return new SimpleSubscriberInfo(subscriberClass, false, methodInfos);
+        }
+
+        @Override
+        public Class<?>[] getSubscriberClasses() {
+            return new Class<?>[]{PreloadSubscriber.class, PreloadSubscriber2.class};
+        }
+
+        @Override
+        public String[] getSubscriberClassNames() {
+            return new String[]{PreloadSubscriber.class.getName(), PreloadSubscriber2.class.getName()};
+        }
+    }
+
+    public class PreloadSubscriber {
+        @Subscribe
+        public void onEvent(String event) {
+            trackEvent(event);
+        }
+    }
+
+    public class PreloadSubscriber2 {
+        @Subscribe
+        public void onEvent(String event) {
+            trackEvent(event);
+        }
+    }
+
+}
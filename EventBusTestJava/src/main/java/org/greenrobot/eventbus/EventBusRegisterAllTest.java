@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EventBusRegisterAllTest extends AbstractEventBusTest {
+
+    private final List<String> deliveries = Collections.synchronizedList(new ArrayList<String>());
+
+    @Test
+    public void testRegisterAllKeepsPriorityOrder() {
+        PrioSubscriber existingLow = new PrioSubscriber("existingLow", 0);
+        PrioSubscriber existingHigh = new PrioSubscriber("existingHigh", 10);
+        eventBus.register(existingLow);
+        eventBus.register(existingHigh);
+
+        List<Object> subscribers = new ArrayList<>();
+        subscribers.add(new PrioSubscriber("newLow", 0));
+        subscribers.add(new PrioSubscriber("newHigh", 10));
+        subscribers.add(new PrioSubscriber("newMedium", 5));
+        subscribers.add(new PrioSubscriber("newLow2", 0));
+        eventBus.registerAll(subscribers);
+        eventBus.post("event");
+
+        // Same order as registering one by one: equal priorities in registration order
+        assertEquals(Arrays.asList("existingHigh", "newHigh", "newMedium", "existingLow", "newLow", "newLow2"),
+                deliveries);
+        for (Object subscriber : subscribers) {
+            assertTrue(eventBus.isRegistered(subscriber));
+        }
+    }
+
+    @Test
+    public void testRegisterAllDuplicate() {
+        PrioSubscriber registered = new PrioSubscriber("registered", 0);
+        eventBus.register(registered);
+        PrioSubscriber other = new PrioSubscriber("other", 0);
+        try {
+            eventBus.registerAll(Arrays.asList(other, registered));
+            fail("Should have thrown");
+        } catch (EventBusException expected) {
+            // Expected
+        }
+        assertFalse(eventBus.isRegistered(other));
+
+        try {
+            eventBus.registerAll(Arrays.asList(other, other));
+            fail("Should have thrown");
+        } catch (EventBusException expected) {
+            // Expected
+        }
+        assertFalse(eventBus.isRegistered(other));
+    }
+
+    @Test
+    public void testRegisterAllSticky() {
+        eventBus.postSticky("sticky");
+        eventBus.registerAll(Arrays.asList(new StickySubscriber(), new StickySubscriber()));
+        assertEventCount(2);
+    }
+
+    @Test
+    public void testUnregisterAll() {
+        PrioSubscriber remaining = new PrioSubscriber("remaining", 0);
+        List<PrioSubscriber> subscribers = Arrays.asList(new PrioSubscriber("removed1", 5),
+                new PrioSubscriber("removed2", 0));
+        eventBus.register(remaining);
+        eventBus.registerAll(subscribers);
+
+        eventBus.unregisterAll(subscribers);
+        eventBus.post("event");
+
+        assertEquals(Collections.singletonList("remaining"), deliveries);
+        assertTrue(eventBus.isRegistered(remaining));
+        assertFalse(eventBus.isRegistered(subscribers.get(0)));
+        assertFalse(eventBus.isRegistered(subscribers.get(1)));
+    }
+
+    public class PrioSubscriber {
+        final String name;
+        final int priority;
+
+        PrioSubscriber(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        @Subscribe(priority = 10)
+        public void onEventHigh(String event) {
+            if (priority == 10) {
+                deliveries.add(name);
+            }
+        }
+
+        @Subscribe(priority = 5)
+        public void onEventMedium(String event) {
+            if (priority == 5) {
+                deliveries.add(name);
+            }
+        }
+
+        @Subscribe
+        public void onEventLow(String event) {
+            if (priority == 0) {
+                deliveries.add(name);
+            }
+        }
+    }
+
+    public class StickySubscriber {
+        @Subscribe(sticky = true)
+        public void onEvent(String event) {
+            trackEvent(event);
+        }
+    }
+
+}
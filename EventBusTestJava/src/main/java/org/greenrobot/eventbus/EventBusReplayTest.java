@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventBusReplayTest extends AbstractEventBusTest {
+
+    public EventBusReplayTest() {
+        super(true);
+    }
+
+    @Test
+    public void testReplayLastEvents() {
+        eventBus = EventBus.builder().replay(String.class, 3).build();
+        for (int i = 1; i <= 5; i++) {
+            eventBus.post("Event " + i);
+        }
+        assertEquals(Arrays.asList("Event 3", "Event 4", "Event 5"), eventBus.getReplayEvents(String.class));
+        eventBus.register(new StickyStringSubscriber());
+        assertEquals(Arrays.<Object>asList("Event 3", "Event 4", "Event 5"), eventsReceived);
+
+        eventBus.post("Event 6");
+        assertEquals(4, eventsReceived.size());
+        assertEquals("Event 6", lastEvent);
+    }
+
+    @Test
+    public void testNonStickySubscriberIsNotReplayed() {
+        eventBus = EventBus.builder().replay(String.class, 3).build();
+        eventBus.post("Event");
+        eventBus.register(new StringSubscriber());
+        assertEquals(0, eventCount.intValue());
+    }
+
+    @Test
+    public void testStickyEventIsReplayedOnce() {
+        eventBus = EventBus.builder().replay(String.class, 3).build();
+        eventBus.post("Event 1");
+        eventBus.postSticky("Event 2");
+        eventBus.register(new StickyStringSubscriber());
+        assertEquals(Arrays.<Object>asList("Event 1", "Event 2"), eventsReceived);
+    }
+
+    @Test
+    public void testMaxAge() throws InterruptedException {
+        eventBus = EventBus.builder().replay(String.class, 10, 30, TimeUnit.MILLISECONDS).build();
+        eventBus.post("Old");
+        Thread.sleep(50);
+        eventBus.post("New");
+        eventBus.register(new StickyStringSubscriber());
+        assertEquals(Arrays.<Object>asList("New"), eventsReceived);
+    }
+
+    @Test
+    public void testReplaySubtypesInPostingOrder() {
+        eventBus = EventBus.builder().replay(String.class, 3).replay(IntTestEvent.class, 3).build();
+        IntTestEvent intEvent = new IntTestEvent(1);
+        eventBus.post("A");
+        eventBus.post(intEvent);
+        eventBus.post("B");
+        eventBus.register(new StickyObjectSubscriber());
+        assertEquals(Arrays.<Object>asList("A", intEvent, "B"), eventsReceived);
+    }
+
+    @Test
+    public void testRegisterDuringConcurrentPosts() throws InterruptedException {
+        final int count = 2000;
+        eventBus = EventBus.builder().replay(IntTestEvent.class, count).build();
+        Thread poster = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    eventBus.post(new IntTestEvent(i));
+                }
+            }
+        };
+        poster.start();
+        while (eventBus.getReplayEvents(IntTestEvent.class).size() < count / 2) {
+            Thread.yield();
+        }
+        final List<Integer> values = new ArrayList<>();
+        eventBus.subscribe(IntTestEvent.class, new EventConsumer<IntTestEvent>() {
+            @Override
+            public void onEvent(IntTestEvent event) {
+                synchronized (values) {
+                    values.add(event.value);
+                }
+            }
+        }, ThreadMode.POSTING, 0, true);
+        poster.join();
+
+        // No gaps, no duplicates, in order
+        synchronized (values) {
+            assertEquals(count, values.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals(i, values.get(i).intValue());
+            }
+        }
+        assertTrue(eventBus.getReplayEvents(String.class).isEmpty());
+    }
+
+    public class StringSubscriber {
+        @Subscribe
+        public void onEvent(String event) {
+            trackEvent(event);
+        }
+    }
+
+    public class StickyStringSubscriber {
+        @Subscribe(sticky = true)
+        public void onEvent(String event) {
+            trackEvent(event);
+        }
+    }
+
+    public class StickyObjectSubscriber {
+        @Subscribe(sticky = true)
+        public void onEvent(Object event) {
+            trackEvent(event);
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Tests {@link EventBusBuilder#slowSubscriberWatchdog(long, TimeUnit, boolean, SlowSubscriberListener)}. */
+public class EventBusSlowSubscriberTest {
+
+    private final List<SlowSubscriberReport> reports = new CopyOnWriteArrayList<>();
+    private final SlowSubscriberListener listener = new SlowSubscriberListener() {
+        @Override
+        public void onSlowSubscriber(SlowSubscriberReport report) {
+            reports.add(report);
+        }
+    };
+
+    @Test
+    public void testStuckSubscriberReportedWhileRunning() {
+        EventBus eventBus = EventBus.builder()
+                .slowSubscriberWatchdog(20, TimeUnit.MILLISECONDS, true, listener).build();
+        eventBus.register(new SlowSubscriber());
+        eventBus.post("Hello");
+
+        assertEquals(1, reports.size());
+        SlowSubscriberReport report = reports.get(0);
+        assertSame(SlowSubscriber.class, report.getSubscriberClass());
+        assertEquals("onEvent", report.getMethodName());
+        assertSame(String.class, report.getEventType());
+        assertSame(ThreadMode.POSTING, report.getThreadMode());
+        assertEquals(Thread.currentThread().getName(), report.getThreadName());
+        assertFalse(report.isFinished());
+        assertTrue(report.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        StackTraceElement[] stackTrace = report.getStackTrace();
+        assertNotNull(stackTrace);
+        boolean found = false;
+        for (StackTraceElement element : stackTrace) {
+            found |= element.getClassName().equals(SlowSubscriber.class.getName());
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void testWithoutStackTraces() {
+        EventBus eventBus = EventBus.builder()
+                .slowSubscriberWatchdog(20, TimeUnit.MILLISECONDS, false, listener).build();
+        eventBus.register(new SlowSubscriber());
+        eventBus.post("Hello");
+        assertEquals(1, reports.size());
+        assertNull(reports.get(0).getStackTrace());
+    }
+
+    @Test
+    public void testFastSubscriberNotReported() {
+        EventBus eventBus = EventBus.builder()
+                .slowSubscriberWatchdog(1, TimeUnit.SECONDS, true, listener).build();
+        eventBus.register(new SlowSubscriber());
+        eventBus.post("Hello");
+        assertEquals(0, reports.size());
+    }
+
+    @Test
+    public void testEventConsumer() {
+        EventBus eventBus = EventBus.builder()
+                .slowSubscriberWatchdog(20, TimeUnit.MILLISECONDS, false, listener).build();
+        EventConsumer<Integer> consumer = new EventConsumer<Integer>() {
+            @Override
+            public void onEvent(Integer event) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        eventBus.subscribe(Integer.class, consumer);
+        eventBus.post(1);
+        assertEquals(1, reports.size());
+        assertSame(consumer.getClass(), reports.get(0).getSubscriberClass());
+        assertSame(Integer.class, reports.get(0).getEventType());
+        assertNull(reports.get(0).getMethodName());
+    }
+
+    @Test
+    public void testAsyncNotWatched() {
+        EventBus eventBus = EventBus.builder()
+                .slowSubscriberWatchdog(20, TimeUnit.MILLISECONDS, false, listener).build();
+        SlowSubscriberWatchdog watchdog = new SlowSubscriberWatchdog(1, false, listener, eventBus.getLogger());
+        SubscriberMethod subscriberMethod = new SubscriberMethod(SlowSubscriber.class, "onEvent", null,
+                String.class, ThreadMode.ASYNC, 0, false);
+        assertNull(watchdog.enter(new Subscription(new SlowSubscriber(), subscriberMethod), "Hello"));
+    }
+
+    @Test
+    public void testSlowSubscriberReportedAfterFinishing() {
+        EventBus eventBus = EventBus.builder()
+                .slowSubscriberWatchdog(20, TimeUnit.MILLISECONDS, false, listener).build();
+        SlowSubscriberWatchdog watchdog = new SlowSubscriberWatchdog(TimeUnit.MILLISECONDS.toNanos(1), false,
+                listener, eventBus.getLogger());
+        Subscription subscription = new Subscription(new SlowSubscriber(), new SubscriberMethodFinder(null, false,
+                true).findSubscriberMethods(SlowSubscriber.class).get(0));
+        SlowSubscriberWatchdog.Slot slot = watchdog.enter(subscription, "Hello");
+        assertNotNull(slot);
+        // Nested deliveries are not watched separately
+        assertNull(watchdog.enter(subscription, "Nested"));
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(2)) {
+            // Busy wait, so the scanner thread may or may not catch it
+        }
+        watchdog.exit(slot);
+        assertEquals(1, reports.size());
+        assertSame(SlowSubscriber.class, reports.get(0).getSubscriberClass());
+    }
+
+    public static class SlowSubscriber {
+        @Subscribe
+        public void onEvent(String event) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+}
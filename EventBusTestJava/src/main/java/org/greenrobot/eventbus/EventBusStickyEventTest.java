@@ -17,6 +17,9 @@ package org.greenrobot.eventbus;
 
 import org.junit.Test;
 
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.*;
 
 /**
@@ -157,6 +160,123 @@ public class EventBusStickyEventTest extends AbstractEventBusTest {
         assertNull(eventBus.getStickyEvent(String.class));
     }
 
+    @Test
+    public void testPostStickyWithTimeToLive() throws InterruptedException {
+        eventBus.postSticky("Sticky", 20, TimeUnit.MILLISECONDS);
+        assertEquals("Sticky", eventBus.getStickyEvent(String.class));
+        long version = eventBus.getStickyEventVersion(String.class);
+        Thread.sleep(40);
+        assertNull(eventBus.getStickyEvent(String.class));
+        assertTrue(eventBus.getStickyEventVersion(String.class) > version);
+        assertFalse(eventBus.removeStickyEvent("Sticky"));
+    }
+
+    @Test
+    public void testExpiredStickyEventIsNotDelivered() throws InterruptedException {
+        eventBus.postSticky("Sticky", 20, TimeUnit.MILLISECONDS);
+        eventBus.postSticky(new IntTestEvent(7));
+        Thread.sleep(40);
+        eventBus.register(this);
+        assertEquals(1, eventCount.intValue());
+        assertTrue(lastEvent instanceof IntTestEvent);
+        assertTrue(eventBus.getStickyEvents(String.class, IntTestEvent.class).containsKey(IntTestEvent.class));
+        assertFalse(eventBus.getStickyEvents(String.class, IntTestEvent.class).containsKey(String.class));
+    }
+
+    @Test
+    public void testPostStickyWithoutTimeToLiveDoesNotExpire() throws InterruptedException {
+        eventBus.postSticky("Sticky", 20, TimeUnit.MILLISECONDS);
+        eventBus.postSticky("Sticky");
+        Thread.sleep(40);
+        assertEquals("Sticky", eventBus.getStickyEvent(String.class));
+    }
+
+    @Test
+    public void testStickyEventVersion() {
+        assertEquals(0, eventBus.getStickyEventVersion(String.class));
+        eventBus.postSticky("Sticky");
+        long version = eventBus.getStickyEventVersion(String.class);
+        assertTrue(version > 0);
+        assertEquals(version, eventBus.getStickyEventVersion(String.class));
+
+        eventBus.postSticky(new IntTestEvent(42));
+        assertEquals(version, eventBus.getStickyEventVersion(String.class));
+
+        eventBus.postSticky("Sticky");
+        long versionAfterPost = eventBus.getStickyEventVersion(String.class);
+        assertTrue(versionAfterPost > version);
+        eventBus.removeStickyEvent(String.class);
+        assertTrue(eventBus.getStickyEventVersion(String.class) > versionAfterPost);
+    }
+
+    @Test
+    public void testReplaceStickyEvent() {
+        eventBus.register(this);
+        assertFalse(eventBus.replaceStickyEvent("Old", "New"));
+        eventBus.postSticky("Old");
+        long version = eventBus.getStickyEventVersion(String.class);
+
+        assertFalse(eventBus.replaceStickyEvent("Other", "New"));
+        assertEquals("Old", eventBus.getStickyEvent(String.class));
+        assertEquals(version, eventBus.getStickyEventVersion(String.class));
+
+        assertTrue(eventBus.replaceStickyEvent("Old", "New"));
+        assertEquals("New", eventBus.getStickyEvent(String.class));
+        assertEquals("New", lastEvent);
+        assertEquals(2, eventCount.intValue());
+        assertTrue(eventBus.getStickyEventVersion(String.class) > version);
+    }
+
+    @Test
+    public void testReplaceStickyEventKeepsTimeToLive() throws InterruptedException {
+        eventBus.postSticky("Old", 20, TimeUnit.MILLISECONDS);
+        assertTrue(eventBus.replaceStickyEvent("Old", "New"));
+        assertEquals("New", eventBus.getStickyEvent(String.class));
+        Thread.sleep(40);
+        assertNull(eventBus.getStickyEvent(String.class));
+    }
+
+    @Test
+    public void testGetStickyEvents() {
+        eventBus.postSticky("Sticky");
+        IntTestEvent intEvent = new IntTestEvent(7);
+        eventBus.postSticky(intEvent);
+        Map<Class<?>, Object> stickyEvents = eventBus.getStickyEvents(String.class, IntTestEvent.class, Object.class);
+        assertEquals(2, stickyEvents.size());
+        assertEquals("Sticky", stickyEvents.get(String.class));
+        assertSame(intEvent, stickyEvents.get(IntTestEvent.class));
+        assertFalse(stickyEvents.containsKey(Object.class));
+    }
+
+    @Test
+    public void testGetStickyEventsIsConsistent() throws InterruptedException {
+        final int count = 10000;
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= count; i++) {
+                    // The String event never gets ahead of the IntTestEvent
+                    eventBus.postSticky(new IntTestEvent(i));
+                    eventBus.postSticky(String.valueOf(i));
+                }
+            }
+        };
+        writer.start();
+        int lastValue = 0;
+        while (lastValue < count) {
+            Map<Class<?>, Object> stickyEvents = eventBus.getStickyEvents(IntTestEvent.class, String.class);
+            IntTestEvent intEvent = (IntTestEvent) stickyEvents.get(IntTestEvent.class);
+            String stringEvent = (String) stickyEvents.get(String.class);
+            if (stringEvent != null) {
+                int value = Integer.parseInt(stringEvent);
+                assertNotNull(intEvent);
+                assertTrue(intEvent.value == value || intEvent.value == value + 1);
+                lastValue = value;
+            }
+        }
+        writer.join();
+    }
+
     @Subscribe(sticky = true)
     public void onEvent(String event) {
         trackEvent(event);
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventBusStickyPersistenceTest extends AbstractEventBusTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final AtomicInteger decodeCount = new AtomicInteger();
+    private File file;
+
+    private final StickyEventCodec codec = new StickyEventCodec() {
+        @Override
+        public byte[] encode(Object event) {
+            if (event instanceof String) {
+                return ((String) event).getBytes(UTF_8);
+            } else if (event instanceof IntTestEvent) {
+                return ByteBuffer.allocate(4).putInt(((IntTestEvent) event).value).array();
+            } else if (event instanceof Runnable) {
+                return new byte[0];
+            } else {
+                return null;
+            }
+        }
+
+        @Override
+        public Object decode(Class<?> eventType, byte[] data) throws IOException {
+            decodeCount.incrementAndGet();
+            if (eventType == String.class) {
+                return new String(data, UTF_8);
+            } else if (eventType == IntTestEvent.class) {
+                return new IntTestEvent(ByteBuffer.wrap(data).getInt());
+            } else {
+                throw new IOException("Unexpected type " + eventType);
+            }
+        }
+    };
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("sticky-events", ".log");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    private EventBus buildEventBus() {
+        return EventBus.builder().stickyPersistence(file, codec).build();
+    }
+
+    @Test
+    public void testReloadLazily() {
+        eventBus = buildEventBus();
+        eventBus.postSticky("Sticky");
+        eventBus.postSticky(new IntTestEvent(7));
+        eventBus.postSticky(new IntTestEvent(8));
+        eventBus.postSticky(new EventBusStickyPersistenceTest());
+
+        EventBus reloaded = buildEventBus();
+        assertEquals(0, decodeCount.get());
+        assertEquals("Sticky", reloaded.getStickyEvent(String.class));
+        assertEquals(1, decodeCount.get());
+        assertEquals(8, reloaded.getStickyEvent(IntTestEvent.class).value);
+        assertEquals(2, decodeCount.get());
+        assertEquals("Sticky", reloaded.getStickyEvent(String.class));
+        assertEquals(2, decodeCount.get());
+        assertNull(reloaded.getStickyEvent(EventBusStickyPersistenceTest.class));
+    }
+
+    @Test
+    public void testReloadedEventsDeliveredOnRegister() {
+        eventBus = buildEventBus();
+        eventBus.postSticky("Sticky");
+        eventBus.postSticky(new IntTestEvent(7));
+
+        eventBus = buildEventBus();
+        eventBus.register(new StickyObjectSubscriber());
+        assertEquals(2, eventCount.intValue());
+    }
+
+    @Test
+    public void testRemovalIsPersisted() {
+        eventBus = buildEventBus();
+        eventBus.postSticky("Sticky");
+        eventBus.postSticky(new IntTestEvent(7));
+        eventBus.removeStickyEvent(String.class);
+        assertNull(buildEventBus().getStickyEvent(String.class));
+
+        EventBus reloaded = buildEventBus();
+        reloaded.removeAllStickyEvents();
+        assertNull(buildEventBus().getStickyEvent(IntTestEvent.class));
+    }
+
+    @Test
+    public void testPostedEventWinsOverPersisted() {
+        eventBus = buildEventBus();
+        eventBus.postSticky("Old");
+
+        EventBus reloaded = buildEventBus();
+        reloaded.postSticky("New");
+        assertEquals("New", reloaded.getStickyEvent(String.class));
+        assertEquals(0, decodeCount.get());
+        assertEquals("New", buildEventBus().getStickyEvent(String.class));
+    }
+
+    @Test
+    public void testExpiredEventsAreNotReloaded() throws InterruptedException {
+        eventBus = buildEventBus();
+        eventBus.postSticky("Sticky", 20, TimeUnit.MILLISECONDS);
+        eventBus.postSticky(new IntTestEvent(7), 1, TimeUnit.MINUTES);
+        Thread.sleep(40);
+        EventBus reloaded = buildEventBus();
+        assertNull(reloaded.getStickyEvent(String.class));
+        assertEquals(7, reloaded.getStickyEvent(IntTestEvent.class).value);
+    }
+
+    @Test
+    public void testCompaction() {
+        eventBus = buildEventBus();
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            payload.append('x');
+        }
+        for (int i = 0; i < 1000; i++) {
+            eventBus.postSticky(payload.toString() + i);
+            eventBus.postSticky(new IntTestEvent(i));
+        }
+        // Without compaction, the file would hold about 1 MB of outdated records
+        assertTrue(file.length() <= 64 * 1024);
+        EventBus reloaded = buildEventBus();
+        assertEquals(payload.toString() + 999, reloaded.getStickyEvent(String.class));
+        assertEquals(999, reloaded.getStickyEvent(IntTestEvent.class).value);
+    }
+
+    @Test
+    public void testFailedCompactionKeepsLog() throws IOException {
+        // A non-empty directory in the way makes moving the old log aside fail
+        File oldFile = new File(file.getPath() + ".old");
+        File blocker = new File(oldFile, "blocker");
+        assertTrue(blocker.mkdirs());
+        try {
+            eventBus = buildEventBus();
+            StringBuilder payload = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                payload.append('x');
+            }
+            for (int i = 0; i < 1000; i++) {
+                eventBus.postSticky(payload.toString() + i);
+                eventBus.postSticky(new IntTestEvent(i));
+            }
+            assertTrue(file.length() > 64 * 1024);
+            assertFalse(new File(file.getPath() + ".compact").exists());
+            eventBus.closeStickyPersistence();
+
+            EventBus reloaded = buildEventBus();
+            assertEquals(payload.toString() + 999, reloaded.getStickyEvent(String.class));
+            assertEquals(999, reloaded.getStickyEvent(IntTestEvent.class).value);
+            reloaded.closeStickyPersistence();
+        } finally {
+            assertTrue(blocker.delete());
+            assertTrue(oldFile.delete());
+        }
+    }
+
+    @Test
+    public void testLogRestoredAfterInterruptedCompaction() {
+        eventBus = buildEventBus();
+        eventBus.postSticky("Sticky");
+        eventBus.closeStickyPersistence();
+        // As if compaction stopped after moving the old log aside
+        File oldFile = new File(file.getPath() + ".old");
+        assertTrue(file.renameTo(oldFile));
+
+        EventBus reloaded = buildEventBus();
+        assertEquals("Sticky", reloaded.getStickyEvent(String.class));
+        assertFalse(oldFile.exists());
+        reloaded.closeStickyPersistence();
+    }
+
+    @Test
+    public void testClose() {
+        eventBus = buildEventBus();
+        eventBus.postSticky("Sticky");
+        eventBus.closeStickyPersistence();
+        eventBus.postSticky("Not persisted");
+        eventBus.removeAllStickyEvents();
+        // Idempotent
+        eventBus.closeStickyPersistence();
+
+        EventBus reloaded = buildEventBus();
+        assertEquals("Sticky", reloaded.getStickyEvent(String.class));
+        reloaded.closeStickyPersistence();
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testUnresolvableTypeDroppedOnce() throws IOException {
+        // A class the persistence's class loader cannot resolve, like one removed since the file was written
+        ClassLoader isolatedLoader = new ClassLoader(getClass().getClassLoader()) {
+        };
+        Object unresolvableEvent = Proxy.newProxyInstance(isolatedLoader, new Class<?>[]{Runnable.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return null;
+                    }
+                });
+        Logger logger = new Logger.SystemOutLogger();
+        StickyEventPersistence persistence = new StickyEventPersistence(file, codec, logger);
+        persistence.write(unresolvableEvent.getClass(), unresolvableEvent, 0);
+        persistence.write(String.class, "Sticky", 0);
+        persistence.close();
+
+        persistence = new StickyEventPersistence(file, codec, logger);
+        assertTrue(persistence.hasUndecoded());
+        assertEquals(Collections.<Class<?>>singletonList(String.class),
+                persistence.getUndecodedTypesAssignableTo(Object.class));
+        // Dropped, so only the String is left to decode
+        assertEquals("Sticky", persistence.decode(String.class).event);
+        assertFalse(persistence.hasUndecoded());
+        assertNull(persistence.decode(String.class));
+        assertTrue(persistence.getUndecodedTypesAssignableTo(Object.class).isEmpty());
+        persistence.close();
+    }
+
+    public class StickyObjectSubscriber {
+        @Subscribe(sticky = true)
+        public void onEvent(Object event) {
+            trackEvent(event);
+        }
+    }
+
+}
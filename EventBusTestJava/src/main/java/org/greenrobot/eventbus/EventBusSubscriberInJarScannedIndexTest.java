@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.greenrobot.eventbus.meta.FlattenedSubscriberInfo;
+import org.greenrobot.eventbus.meta.SubscriberInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/** Uses the index the index scanner generates for the jars in libs, see build.gradle. */
+public class EventBusSubscriberInJarScannedIndexTest extends EventBusSubscriberInJarTest {
+    private final EventBusJavaTestsJarIndex index = new EventBusJavaTestsJarIndex();
+
+    @Before
+    public void overwriteEventBus() {
+        eventBus = EventBus.builder().addIndex(index).build();
+    }
+
+    @Test
+    public void testSubscriberInJarIsIndexed() {
+        SubscriberInfo info = index.getSubscriberInfo(SubscriberInJar.class);
+        assertNotNull(info);
+        assertTrue(info instanceof FlattenedSubscriberInfo);
+        SubscriberMethod[] subscriberMethods = info.getSubscriberMethods();
+        assertEquals(1, subscriberMethods.length);
+        assertEquals("collectString", subscriberMethods[0].methodName);
+        assertEquals(String.class, subscriberMethods[0].eventType);
+        assertArrayEquals(new Class<?>[]{SubscriberInJar.class}, index.getSubscriberClasses());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EventBusWeakRegistrationTest extends AbstractEventBusTest {
+
+    @Test
+    public void testRegisterWeakly() {
+        StringSubscriber subscriber = new StringSubscriber();
+        Registration registration = eventBus.registerWeakly(subscriber);
+        assertTrue(eventBus.isRegistered(subscriber));
+        assertTrue(registration.isRegistered());
+
+        eventBus.post("Hello");
+        assertEventCount(1);
+
+        eventBus.unregister(subscriber);
+        assertFalse(eventBus.isRegistered(subscriber));
+        assertFalse(registration.isRegistered());
+        eventBus.post("Hello");
+        assertEventCount(1);
+    }
+
+    @Test
+    public void testRegisterWeaklyTwice() {
+        StringSubscriber subscriber = new StringSubscriber();
+        eventBus.registerWeakly(subscriber);
+        try {
+            eventBus.register(subscriber);
+            fail("Did not throw");
+        } catch (EventBusException expected) {
+            // OK
+        }
+    }
+
+    @Test
+    public void testCollectedSubscriberIsPurged() throws InterruptedException {
+        StringSubscriber subscriber = new StringSubscriber();
+        WeakReference<StringSubscriber> subscriberRef = new WeakReference<>(subscriber);
+        Registration registration = eventBus.registerWeakly(subscriber);
+        subscriber = null;
+
+        // Purging is piggy-backed on posting; the reference is enqueued some time after it was cleared
+        for (int i = 0; i < 100 && eventBus.hasSubscriberForEvent(String.class); i++) {
+            System.gc();
+            Thread.sleep(10);
+            eventBus.post("Hello");
+        }
+        assertNull(subscriberRef.get());
+        assertFalse(eventBus.hasSubscriberForEvent(String.class));
+        assertFalse(registration.isRegistered());
+        assertEventCount(0);
+    }
+
+    public class StringSubscriber {
+        @Subscribe
+        public void onEvent(String event) {
+            trackEvent(event);
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StickyEventStoreTest {
+
+    private final StickyEventStore store = new StickyEventStore(new EventBus(), null, null);
+
+    @Test
+    public void testSweepRemovesExpiredEvents() throws InterruptedException {
+        store.put("Sticky", TimeUnit.MILLISECONDS.toNanos(10));
+        store.put(new IntTestEvent(1), 0);
+        long stringVersion = store.getVersion(String.class);
+        long intVersion = store.getVersion(IntTestEvent.class);
+        assertTrue(store.hasExpiringEvents());
+        Thread.sleep(20);
+        store.sweepExpired();
+        assertFalse(store.hasExpiringEvents());
+        assertTrue(store.getVersion(String.class) > stringVersion);
+        assertFalse(store.getStickyTypesAssignableTo(Object.class).contains(String.class));
+        assertEquals(intVersion, store.getVersion(IntTestEvent.class));
+    }
+
+    @Test
+    public void testRemoveDropsEmptyIndexSets() {
+        store.put("Sticky", 0);
+        store.put(new IntTestEvent(1), 0);
+        assertEquals("Sticky", store.remove(String.class));
+        assertNull(store.getStickyTypesAssignableTo(String.class));
+        assertNull(store.getStickyTypesAssignableTo(CharSequence.class));
+        assertFalse(store.getStickyTypesAssignableTo(Object.class).contains(String.class));
+
+        store.remove(IntTestEvent.class);
+        assertNull(store.getStickyTypesAssignableTo(Object.class));
+        store.put("Sticky", 0);
+        assertTrue(store.getStickyTypesAssignableTo(Object.class).contains(String.class));
+    }
+
+    @Test
+    public void testVersionsIncreaseAcrossRemoval() {
+        assertEquals(0, store.getVersion(String.class));
+        store.put("Sticky", 0);
+        long version = store.getVersion(String.class);
+        assertTrue(version > 0);
+        store.remove(String.class);
+        long removedVersion = store.getVersion(String.class);
+        assertTrue(removedVersion > version);
+        store.put("Sticky", 0);
+        assertTrue(store.getVersion(String.class) > removedVersion);
+    }
+
+    @Test
+    public void testOverwritingExpiringEvent() {
+        store.put("Sticky", TimeUnit.MINUTES.toNanos(1));
+        assertTrue(store.hasExpiringEvents());
+        store.put("Sticky", 0);
+        assertFalse(store.hasExpiringEvents());
+        store.put("Sticky", TimeUnit.MINUTES.toNanos(1));
+        assertEquals("Sticky", store.remove(String.class));
+        assertFalse(store.hasExpiringEvents());
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2012-2020 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greenrobot.eventbus.packageprivate;
+
+import org.greenrobot.eventbus.Subscribe;
+
+import java.util.List;
+
+/**
+ * Subscribers not accessible to EventBusJavaTestsIndex (nor to EventBus), which are indexed by a helper class
+ * generated into this package.
+ */
+public final class PackagePrivateSubscribers {
+
+    private PackagePrivateSubscribers() {
+    }
+
+    public static Object newSubscriber(List<Object> events) {
+        return new Subscriber(events);
+    }
+
+    public static Object newEvent() {
+        return new PackagePrivateEvent();
+    }
+
+    static class PackagePrivateEvent {
+    }
+
+    static class BaseSubscriber {
+        final List<Object> events;
+
+        BaseSubscriber(List<Object> events) {
+            this.events = events;
+        }
+
+        @Subscribe
+        public void onEvent(String event) {
+            events.add(event);
+        }
+
+        @Subscribe
+        public void onIntegerEvent(Integer event) {
+            events.add("Base " + event);
+        }
+    }
+
+    static class Subscriber extends BaseSubscriber {
+        Subscriber(List<Object> events) {
+            super(events);
+        }
+
+        @Subscribe
+        public void onEvent(PackagePrivateEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        @Subscribe
+        public void onIntegerEvent(Integer event) {
+            events.add(event);
+        }
+    }
+}